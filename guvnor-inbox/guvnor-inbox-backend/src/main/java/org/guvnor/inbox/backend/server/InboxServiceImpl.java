@@ -50,6 +50,8 @@ public class InboxServiceImpl
     public static final String INCOMING_ID = "incoming";
     private static final String INBOX = "inbox";
 
+    private static final XStream xStream = createXStream();
+
     @Inject
     @Named("ioStrategy")
     private IOService ioService;
@@ -134,7 +136,7 @@ public class InboxServiceImpl
         if ( ioService.exists( path ) ) {
             final String xml = ioService.readAllString( path );
             if ( !( xml == null || xml.equals( "" ) ) ) {
-                return (List<InboxEntry>) getXStream().fromXML( xml );
+                return (List<InboxEntry>) xStream.fromXML( xml );
             } else {
                 return new ArrayList<InboxEntry>();
             }
@@ -255,13 +257,13 @@ public class InboxServiceImpl
         Path path = userServices.buildPath( INBOX, boxName );
 
         //System.out.println( "writeEntries: " + path.toString() );
-        String entry = getXStream().toXML( entries );
+        String entry = xStream.toXML( entries );
         //System.out.println( "writeEntries: " + entry );
 
         ioService.write( path, entry );
     }
 
-    private XStream getXStream() {
+    private static XStream createXStream() {
         XStream xs = new XStream();
         xs.alias( "inbox-entries", List.class );
         xs.alias( "entry", InboxEntry.class );
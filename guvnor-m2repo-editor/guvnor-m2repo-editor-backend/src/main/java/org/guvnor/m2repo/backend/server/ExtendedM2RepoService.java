@@ -23,8 +23,14 @@ import org.guvnor.common.services.project.model.GAV;
 
 public interface ExtendedM2RepoService extends M2RepoService {
 
-    public void deployJar( InputStream is,
-                           GAV gav );
+    /**
+     * Deploy a JAR to the Guvnor repository
+     * @param is
+     * @param gav
+     * @return false if the JAR was identical to the JAR already deployed for the GAV, and so was not deployed
+     */
+    public boolean deployJar( InputStream is,
+                              GAV gav );
 
     public InputStream loadJar( String path );
 
@@ -37,6 +37,9 @@ import org.sonatype.aether.installation.InstallationException;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -44,10 +47,18 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
@@ -61,7 +72,19 @@ public class GuvnorM2Repository {
     public static final String M2_REPO_ROOT = "repository";
     public static final String REPO_ID_SNAPSHOTS = "snapshots";
     public static final String REPO_ID_RELEASES = "releases";
-    private static final int BUFFER_SIZE = 1024;
+    private static final int BUFFER_SIZE = 8192;
+    //Not the artifactId, as File.createTempFile requires a prefix of at least three characters
+    private static final String TEMP_FILE_PREFIX = "guvnor-deploy-";
+
+    private static final int MAX_DEPLOYED_DIGESTS = 1000;
+
+    //Digest of the entries of the JARs most recently deployed by deployArtifact(InputStream, GAV), keyed by GAV
+    private final Map<String, String> deployedDigests = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_DEPLOYED_DIGESTS;
+        }
+    };
 
     private File snapshotsRepository;
     private File releasesRepository;
@@ -96,61 +119,190 @@ public class GuvnorM2Repository {
         return "file://" + file.getAbsolutePath();
     }
 
-    public void deployArtifact(InputStream inputStream, GAV gav) {
-        File jarFile = new File( System.getProperty( "java.io.tmpdir" ), toFileName(gav, null, "jar"));
+    /**
+     * Deploy a JAR, adding a pom.xml if the JAR does not contain one. Deploying a JAR whose entries are identical
+     * to those of the JAR last deployed for the same GAV is skipped.
+     * @param inputStream
+     * @param gav
+     * @return true if the JAR was deployed, false if it was identical to that already deployed
+     */
+    public boolean deployArtifact(InputStream inputStream, GAV gav) {
+        String digest = null;
+        //JARs already held in memory are checked before anything is written
+        if (inputStream instanceof ByteArrayInputStream) {
+            inputStream.mark(Integer.MAX_VALUE);
+            try {
+                digest = digestJar(inputStream);
+                inputStream.reset();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            if (isDeployed(gav, digest)) {
+                return false;
+            }
+        }
 
+        File jarFile = null;
+        File pomFile = null;
         try {
-            if (!jarFile.exists()) {
-                jarFile.getParentFile().mkdirs();
-                jarFile.createNewFile();
+            jarFile = File.createTempFile(TEMP_FILE_PREFIX, ".jar");
+            final Map<String, String> entryDigests = new HashMap<String, String>();
+            final String pom = copyJarWithPOM(inputStream, jarFile, gav, entryDigests);
+            if (digest == null) {
+                digest = toDigest(entryDigests);
+                if (isDeployed(gav, digest)) {
+                    return false;
+                }
+            }
+
+            pomFile = File.createTempFile(TEMP_FILE_PREFIX, ".pom");
+            final FileOutputStream fos = new FileOutputStream(pomFile);
+            try {
+                IOUtils.write(pom, fos, "UTF-8");
+            } finally {
+                fos.close();
             }
-            FileOutputStream fos = new FileOutputStream(jarFile);
 
-            final byte[] buf = new byte[BUFFER_SIZE];
-            int byteRead = 0;
-            while ((byteRead = inputStream.read(buf)) != -1) {
-                fos.write(buf, 0, byteRead);
+            deployArtifact(gav, jarFile, pomFile);
+            synchronized (deployedDigests) {
+                deployedDigests.put(gav.toString(), digest);
             }
-            fos.flush();
-            fos.close();
+            return true;
+
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            if (jarFile != null) {
+                jarFile.delete();
+            }
+            if (pomFile != null) {
+                pomFile.delete();
+            }
         }
+    }
 
-        //Prepare pom file
-        String pom = loadPOMFromJarInternal(new File(jarFile.getPath()));
-        if(pom == null) {
-            pom =  generatePOM(gav);
-            jarFile = appendPOMToJar(pom, jarFile.getPath(), gav);
+    private boolean isDeployed(GAV gav, String digest) {
+        synchronized (deployedDigests) {
+            if (!digest.equals(deployedDigests.get(gav.toString()))) {
+                return false;
+            }
         }
-        File pomFile = new File( System.getProperty( "java.io.tmpdir" ), toFileName(gav, null, "pom"));
+        return new File(toURL(getM2RepositoryRootDir(), gav, null)).getParentFile().exists();
+    }
+
+    //Copy a JAR entry by entry, recording the digest of each entry and appending a generated pom.xml if the JAR
+    //does not contain one. Returns the pom.xml
+    private String copyJarWithPOM(InputStream inputStream, File target, GAV gav, Map<String, String> entryDigests) throws IOException {
+        String pom = null;
+        final byte[] buf = new byte[BUFFER_SIZE];
+        final MessageDigest md = newDigest();
+        final ZipInputStream zis = new ZipInputStream(inputStream);
+        final ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(target), BUFFER_SIZE));
         try {
-            if (!pomFile.exists()) {
-                pomFile.getParentFile().mkdirs();
-                pomFile.createNewFile();
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                //The entry is re-compressed, so its compressed size may differ
+                final ZipEntry copy = new ZipEntry(entry);
+                copy.setCompressedSize(-1);
+                zos.putNextEntry(copy);
+                if (pom == null && isPOM(entry)) {
+                    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    copy(zis, zos, baos, md, buf);
+                    pom = baos.toString("UTF-8");
+                } else {
+                    copy(zis, zos, null, md, buf);
+                }
+                zos.closeEntry();
+                entryDigests.put(entry.getName(), toHex(md.digest()));
+            }
+            if (pom == null) {
+                pom = generatePOM(gav);
+                zos.putNextEntry(new ZipEntry(getPomXmlPath(gav)));
+                zos.write(pom.getBytes("UTF-8"));
+                zos.closeEntry();
             }
+        } finally {
+            zos.close();
+        }
+        return pom;
+    }
 
-            FileOutputStream fos = new FileOutputStream(pomFile);
-            IOUtils.write(pom, fos);
+    private static void copy(InputStream in, OutputStream out, OutputStream tee, MessageDigest md, byte[] buf) throws IOException {
+        int byteRead;
+        while ((byteRead = in.read(buf)) != -1) {
+            if (out != null) {
+                out.write(buf, 0, byteRead);
+            }
+            if (tee != null) {
+                tee.write(buf, 0, byteRead);
+            }
+            md.update(buf, 0, byteRead);
+        }
+    }
 
-            fos.flush();
-            fos.close();
-        } catch (IOException e) {
+    /**
+     * Digest of the names and contents of a JAR's entries. Entries' timestamps and order, which differ each time a
+     * JAR is built, do not affect the digest.
+     * @param inputStream
+     * @return
+     * @throws IOException
+     */
+    static String digestJar(InputStream inputStream) throws IOException {
+        final Map<String, String> entryDigests = new HashMap<String, String>();
+        final byte[] buf = new byte[BUFFER_SIZE];
+        final MessageDigest md = newDigest();
+        final ZipInputStream zis = new ZipInputStream(inputStream);
+        ZipEntry entry;
+        while ((entry = zis.getNextEntry()) != null) {
+            copy(zis, null, null, md, buf);
+            entryDigests.put(entry.getName(), toHex(md.digest()));
+        }
+        return toDigest(entryDigests);
+    }
+
+    private static String toDigest(Map<String, String> entryDigests) {
+        final MessageDigest md = newDigest();
+        try {
+            for (Map.Entry<String, String> e : new TreeMap<String, String>(entryDigests).entrySet()) {
+                md.update(e.getKey().getBytes("UTF-8"));
+                md.update((byte) 0);
+                md.update(e.getValue().getBytes("UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+        return toHex(md.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
+    }
 
-        deployArtifact(gav, jarFile, pomFile);
+    private static boolean isPOM(ZipEntry entry) {
+        return entry.getName().startsWith("META-INF/maven") && entry.getName().endsWith("pom.xml");
     }
 
-    public void deployArtifact(GAV gav, File jarFile, File pomfile) {
+    private static String toHex(byte[] digest) {
+        final StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    // install into local repository as it's preferred when loading kjars into KieContainer
+    private void installArtifact(GAV gav, File jarFile, File pomFile) {
         Artifact jarArtifact = new DefaultArtifact( gav.getGroupId(), gav.getArtifactId(), "jar", gav.getVersion() );
         jarArtifact = jarArtifact.setFile( jarFile );
 
         Artifact pomArtifact = new SubArtifact( jarArtifact, "", "pom" );
-        pomArtifact = pomArtifact.setFile( pomfile );
-
+        pomArtifact = pomArtifact.setFile( pomFile );
 
-        // install into local repository as it's preferred when loading kjars into KieContainer
         try {
             InstallRequest installRequest = new InstallRequest();
             installRequest
@@ -161,6 +313,16 @@ public class GuvnorM2Repository {
         } catch (InstallationException e) {
             throw new RuntimeException(e);
         }
+    }
+
+    public void deployArtifact(GAV gav, File jarFile, File pomfile) {
+        installArtifact(gav, jarFile, pomfile);
+
+        Artifact jarArtifact = new DefaultArtifact( gav.getGroupId(), gav.getArtifactId(), "jar", gav.getVersion() );
+        jarArtifact = jarArtifact.setFile( jarFile );
+
+        Artifact pomArtifact = new SubArtifact( jarArtifact, "", "pom" );
+        pomArtifact = pomArtifact.setFile( pomfile );
 
         DeployRequest deployRequest = new DeployRequest();
         deployRequest
@@ -188,6 +350,9 @@ public class GuvnorM2Repository {
     }
 
     public boolean deleteFile(String[] fullPaths) {
+        synchronized (deployedDigests) {
+            deployedDigests.clear();
+        }
         for (String fullPath : fullPaths) {
             final File file = new File(M2_REPO_ROOT, fullPath);
             if (file.exists()) {
@@ -50,9 +50,9 @@ public class M2RepoServiceImpl implements M2RepoService,
     private POMContentHandler pomContentHandler;
 
     @Override
-    public void deployJar( InputStream is,
-                           GAV gav ) {
-        repository.deployArtifact( is, gav );
+    public boolean deployJar( InputStream is,
+                              GAV gav ) {
+        return repository.deployArtifact( is, gav );
     }
 
     @Override
@@ -16,10 +16,15 @@
 
 package org.guvnor.m2repo.backend.server;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.After;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -166,6 +171,53 @@ public class M2RepositoryTest {
 
     }
     
+    @Test
+    public void testDeployIdenticalArtifact() throws Exception {
+        GuvnorM2Repository repo = new GuvnorM2Repository();
+        repo.init();
+
+        GAV gav = new GAV("org.jboss.arquillian.core", "arquillian-core-api", "1.0.2.Final");
+        byte[] jar = IOUtils.toByteArray(this.getClass().getResourceAsStream("guvnor-m2repo-editor-backend-6.0.0-SNAPSHOT.jar"));
+        assertTrue(repo.deployArtifact(new ByteArrayInputStream(jar), gav));
+
+        //Deployed through Aether, so Maven clients can resolve the artifact
+        File artifactDir = new File("repository" + File.separator + "org" + File.separator + "jboss" + File.separator + "arquillian" + File.separator + "core" + File.separator + "arquillian-core-api");
+        assertTrue(new File(artifactDir, "maven-metadata.xml").exists());
+        assertTrue(new File(artifactDir, "1.0.2.Final" + File.separator + "arquillian-core-api-1.0.2.Final.jar.sha1").exists());
+
+        //The same entries, whether or not the JAR is in memory
+        assertFalse(repo.deployArtifact(new ByteArrayInputStream(jar), gav));
+        assertFalse(repo.deployArtifact(this.getClass().getResourceAsStream("guvnor-m2repo-editor-backend-6.0.0-SNAPSHOT.jar"), gav));
+    }
+
+    @Test
+    public void testDeployArtifactWithShortArtifactId() throws Exception {
+        GuvnorM2Repository repo = new GuvnorM2Repository();
+        repo.init();
+
+        GAV gav = new GAV("org.example", "ab", "1.0");
+        assertTrue(repo.deployArtifact(this.getClass().getResourceAsStream("guvnor-m2repo-editor-backend-6.0.0-SNAPSHOT.jar"), gav));
+
+        //Entries are copied with their compression method
+        File jar = new File("repository" + File.separator + "org" + File.separator + "example" + File.separator + "ab" + File.separator + "1.0" + File.separator + "ab-1.0.jar");
+        assertTrue(jar.exists());
+        File original = new File(this.getClass().getResource("guvnor-m2repo-editor-backend-6.0.0-SNAPSHOT.jar").toURI());
+        ZipFile originalZip = new ZipFile(original);
+        ZipFile deployedZip = new ZipFile(jar);
+        try {
+            Enumeration<? extends ZipEntry> entries = originalZip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                ZipEntry deployed = deployedZip.getEntry(entry.getName());
+                assertNotNull(deployed);
+                assertEquals(entry.getMethod(), deployed.getMethod());
+            }
+        } finally {
+            originalZip.close();
+            deployedZip.close();
+        }
+    }
+
     @Test
     @Ignore("Fails - ignored for Beta3")
     public void testDeleteFile() throws Exception {
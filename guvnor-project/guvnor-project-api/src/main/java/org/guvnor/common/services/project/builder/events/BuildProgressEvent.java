@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.builder.events;
+
+import org.guvnor.common.services.project.builder.model.BuildPhase;
+import org.guvnor.common.services.project.builder.model.BuildResults;
+import org.guvnor.common.services.project.builder.model.BuildTicket;
+import org.jboss.errai.common.client.api.annotations.Portable;
+import org.kie.commons.validation.PortablePreconditions;
+
+/**
+ * An event reporting the progress of a build requested through the AsyncBuildService. The BuildResults are
+ * available once the build has completed; a message describing the failure is available if the build failed.
+ */
+@Portable
+public class BuildProgressEvent {
+
+    private BuildTicket ticket;
+    private BuildPhase phase;
+    private int resourceCount;
+    private BuildResults results;
+    private String message;
+
+    public BuildProgressEvent() {
+        //Marshalling
+    }
+
+    public BuildProgressEvent( final BuildTicket ticket,
+                               final BuildPhase phase,
+                               final int resourceCount,
+                               final BuildResults results,
+                               final String message ) {
+        PortablePreconditions.checkNotNull( "ticket",
+                                            ticket );
+        PortablePreconditions.checkNotNull( "phase",
+                                            phase );
+        this.ticket = ticket;
+        this.phase = phase;
+        this.resourceCount = resourceCount;
+        this.results = results;
+        this.message = message;
+    }
+
+    public BuildTicket getTicket() {
+        return ticket;
+    }
+
+    public BuildPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Number of resources ingested, once known
+     * @return
+     */
+    public int getResourceCount() {
+        return resourceCount;
+    }
+
+    public BuildResults getResults() {
+        return results;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.builder.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+/**
+ * A snapshot of the metrics of the build pipeline. Timers and counters are keyed on the names defined below;
+ * build counts are keyed on the URI of the Project's root.
+ */
+@Portable
+public class BuildMetrics {
+
+    //Time builds wait for the build executor
+    public static final String TIMER_QUEUE_WAIT = "queue-wait";
+    //Time to read a Project's resources when creating its Builder
+    public static final String TIMER_INGESTION = "ingestion";
+    //Time for the KieBuilder to compile a Project
+    public static final String TIMER_COMPILE = "compile";
+    //Time spent in BuildValidationHelpers. Helpers can run concurrently, so this can exceed the elapsed time.
+    public static final String TIMER_VALIDATION = "validation";
+    public static final String TIMER_DEPLOY = "deploy";
+    //Prefix of the per-handler timers of PostBuildHandlers; the timer name is the prefix and the handler's class name
+    public static final String TIMER_POST_BUILD_HANDLER_PREFIX = "post-build-handler:";
+
+    public static final String COUNTER_CACHE_HITS = "cache-hits";
+    public static final String COUNTER_CACHE_MISSES = "cache-misses";
+    public static final String COUNTER_CACHE_EVICTIONS = "cache-evictions";
+    //Tasks rejected by the build executor because its queue was full
+    public static final String COUNTER_REJECTED_BUILDS = "rejected-builds";
+    //PostBuildHandlers that did not complete within the timeout
+    public static final String COUNTER_POST_BUILD_HANDLER_TIMEOUTS = "post-build-handler-timeouts";
+
+    private HashMap<String, BuildTimerStatistics> timers = new HashMap<String, BuildTimerStatistics>();
+    private HashMap<String, Long> counters = new HashMap<String, Long>();
+    private HashMap<String, Long> fullBuildCounts = new HashMap<String, Long>();
+    private HashMap<String, Long> incrementalBuildCounts = new HashMap<String, Long>();
+
+    public BuildMetrics() {
+        //Marshalling
+    }
+
+    public BuildMetrics( final Map<String, BuildTimerStatistics> timers,
+                         final Map<String, Long> counters,
+                         final Map<String, Long> fullBuildCounts,
+                         final Map<String, Long> incrementalBuildCounts ) {
+        this.timers.putAll( timers );
+        this.counters.putAll( counters );
+        this.fullBuildCounts.putAll( fullBuildCounts );
+        this.incrementalBuildCounts.putAll( incrementalBuildCounts );
+    }
+
+    public Map<String, BuildTimerStatistics> getTimers() {
+        return Collections.unmodifiableMap( timers );
+    }
+
+    public Map<String, Long> getCounters() {
+        return Collections.unmodifiableMap( counters );
+    }
+
+    public Map<String, Long> getFullBuildCounts() {
+        return Collections.unmodifiableMap( fullBuildCounts );
+    }
+
+    public Map<String, Long> getIncrementalBuildCounts() {
+        return Collections.unmodifiableMap( incrementalBuildCounts );
+    }
+
+}
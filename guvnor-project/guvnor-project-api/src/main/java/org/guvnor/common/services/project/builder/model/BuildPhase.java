@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.builder.model;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+/**
+ * Phases through which a build requested through the AsyncBuildService progresses
+ */
+@Portable
+public enum BuildPhase {
+
+    //Waiting for the build executor
+    QUEUED,
+    //Reading the Project's resources
+    INGESTING,
+    //Compiling the Project and running BuildValidationHelpers
+    BUILDING,
+    //Deploying the KJAR to the M2 repository
+    DEPLOYING,
+    COMPLETED,
+    FAILED;
+
+    public boolean isFinished() {
+        return this == COMPLETED || this == FAILED;
+    }
+
+}
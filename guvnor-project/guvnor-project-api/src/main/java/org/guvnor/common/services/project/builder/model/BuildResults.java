@@ -23,11 +23,21 @@ import java.util.List;
 import org.guvnor.common.services.project.model.GAV;
 import org.jboss.errai.common.client.api.annotations.Portable;
 
+/**
+ * The results of a full build. Results returned by BuildService may contain only the first of the build's messages,
+ * in which case the remainder can be retrieved with {@link org.guvnor.common.services.project.builder.service.BuildService#getBuildMessages(String, int, int)}
+ * using the identifier returned by {@link #getMessagesId()}. The totals per level always cover all messages.
+ */
 @Portable
 public class BuildResults {
 
     private GAV gav;
     private ArrayList<BuildMessage> messages = new ArrayList<BuildMessage>();
+    private int errorCount;
+    private int warningCount;
+    private int infoCount;
+    private int truncatedMessageCount;
+    private String messagesId;
 
     public BuildResults() {
         //Marshalling
@@ -47,6 +57,77 @@ public class BuildResults {
 
     public void addBuildMessage( final BuildMessage message ) {
         this.messages.add( message );
+        count( message );
+    }
+
+    private void count( final BuildMessage message ) {
+        if ( message.getLevel() == null ) {
+            return;
+        }
+        switch ( message.getLevel() ) {
+            case ERROR:
+                errorCount++;
+                break;
+            case WARNING:
+                warningCount++;
+                break;
+            case INFO:
+                infoCount++;
+                break;
+        }
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public int getWarningCount() {
+        return warningCount;
+    }
+
+    public int getInfoCount() {
+        return infoCount;
+    }
+
+    /**
+     * Total number of messages produced by the build, which may exceed the number returned by {@link #getMessages()}.
+     * A build succeeded only if this is zero.
+     * @return
+     */
+    public int getTotalMessageCount() {
+        return messages.size() + truncatedMessageCount;
+    }
+
+    public boolean isTruncated() {
+        return truncatedMessageCount > 0;
+    }
+
+    /**
+     * Identifier with which the complete list of messages can be retrieved, if the results are truncated
+     * @return
+     */
+    public String getMessagesId() {
+        return messagesId;
+    }
+
+    /**
+     * Copy these results retaining only the first messages
+     * @param maxMessages Maximum number of messages to retain
+     * @param messagesId Identifier with which the complete list of messages can be retrieved
+     * @return
+     */
+    public BuildResults truncate( final int maxMessages,
+                                  final String messagesId ) {
+        final BuildResults results = new BuildResults( gav );
+        results.messages.addAll( messages.subList( 0,
+                                                   Math.min( maxMessages,
+                                                             messages.size() ) ) );
+        results.truncatedMessageCount = getTotalMessageCount() - results.messages.size();
+        results.errorCount = errorCount;
+        results.warningCount = warningCount;
+        results.infoCount = infoCount;
+        results.messagesId = messagesId;
+        return results;
     }
 
 }
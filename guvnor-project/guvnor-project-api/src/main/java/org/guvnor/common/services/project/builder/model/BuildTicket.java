@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.builder.model;
+
+import org.guvnor.common.services.project.model.Project;
+import org.jboss.errai.common.client.api.annotations.Portable;
+import org.kie.commons.validation.PortablePreconditions;
+
+/**
+ * Identifies a build requested through the AsyncBuildService
+ */
+@Portable
+public class BuildTicket {
+
+    private String id;
+    private Project project;
+    private boolean deploy;
+
+    public BuildTicket() {
+        //Marshalling
+    }
+
+    public BuildTicket( final String id,
+                        final Project project,
+                        final boolean deploy ) {
+        PortablePreconditions.checkNotNull( "id",
+                                            id );
+        PortablePreconditions.checkNotNull( "project",
+                                            project );
+        this.id = id;
+        this.project = project;
+        this.deploy = deploy;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Project getProject() {
+        return project;
+    }
+
+    public boolean isDeploy() {
+        return deploy;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+        if ( this == o ) {
+            return true;
+        }
+        if ( !( o instanceof BuildTicket ) ) {
+            return false;
+        }
+        return id.equals( ( (BuildTicket) o ).id );
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.builder.model;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+/**
+ * Statistics of the time taken by a stage of the build pipeline
+ */
+@Portable
+public class BuildTimerStatistics {
+
+    private long count;
+    private long totalMillis;
+    private long maxMillis;
+
+    public BuildTimerStatistics() {
+        //Marshalling
+    }
+
+    public BuildTimerStatistics( final long count,
+                                 final long totalMillis,
+                                 final long maxMillis ) {
+        this.count = count;
+        this.totalMillis = totalMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public long getMeanMillis() {
+        return ( count == 0 ? 0 : totalMillis / count );
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.builder.service;
+
+import org.guvnor.common.services.project.builder.events.BuildProgressEvent;
+import org.guvnor.common.services.project.builder.model.BuildResults;
+import org.guvnor.common.services.project.builder.model.BuildTicket;
+import org.guvnor.common.services.project.model.Project;
+import org.jboss.errai.bus.server.annotations.Remote;
+
+/**
+ * Non-blocking variant of BuildService. Builds are queued and a BuildTicket returned immediately. Progress is
+ * reported by BuildProgressEvents, which clients can observe, or by polling.
+ */
+@Remote
+public interface AsyncBuildService {
+
+    /**
+     * Queue a full build without deployment
+     * @param project
+     * @return
+     */
+    BuildTicket build( final Project project );
+
+    /**
+     * Queue a full build with deployment
+     * @param project
+     * @return
+     */
+    BuildTicket buildAndDeploy( final Project project );
+
+    /**
+     * Get the latest progress of a build
+     * @param ticket
+     * @return The latest progress, or null if the ticket is unknown or has expired
+     */
+    BuildProgressEvent getProgress( final BuildTicket ticket );
+
+    /**
+     * Get the results of a build
+     * @param ticket
+     * @return The results, or null if the build has not completed or the ticket is unknown or has expired
+     */
+    BuildResults getResults( final BuildTicket ticket );
+
+}
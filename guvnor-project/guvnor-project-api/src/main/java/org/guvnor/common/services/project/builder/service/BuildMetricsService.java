@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.builder.service;
+
+import org.guvnor.common.services.project.builder.model.BuildMetrics;
+import org.jboss.errai.bus.server.annotations.Remote;
+
+/**
+ * Service to poll the metrics of the build pipeline. The same metrics are available through JMX.
+ */
+@Remote
+public interface BuildMetricsService {
+
+    /**
+     * Get the metrics accumulated since the server started or the metrics were last reset
+     * @return
+     */
+    BuildMetrics getMetrics();
+
+    void resetMetrics();
+
+}
@@ -16,8 +16,10 @@
 
 package org.guvnor.common.services.project.builder.service;
 
+import java.util.List;
 import java.util.Set;
 
+import org.guvnor.common.services.project.builder.model.BuildMessage;
 import org.guvnor.common.services.project.builder.model.BuildResults;
 import org.guvnor.common.services.project.builder.model.IncrementalBuildResults;
 import org.guvnor.common.services.project.model.Project;
@@ -47,6 +49,17 @@ public interface BuildService {
      */
     boolean isBuilt( final Project project );
 
+    /**
+     * Get a page of the messages of a full build whose BuildResults were truncated
+     * @param messagesId Identifier returned by BuildResults#getMessagesId()
+     * @param startIndex Index of the first message to return
+     * @param pageSize Maximum number of messages to return
+     * @return The messages, or an empty list if the messages are no longer retained
+     */
+    List<BuildMessage> getBuildMessages( final String messagesId,
+                                         final int startIndex,
+                                         final int pageSize );
+
     /**
      * Add a Package resource to the build.
      * @param resource
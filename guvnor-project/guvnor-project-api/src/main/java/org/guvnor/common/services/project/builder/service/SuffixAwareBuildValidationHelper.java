@@ -0,0 +1,32 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.builder.service;
+
+import java.util.Set;
+
+/**
+ * A BuildValidationHelper that accepts paths by file name suffix alone. Builders select such helpers without
+ * calling {@link #accepts(org.uberfire.backend.vfs.Path)}, which is considerably cheaper for large Projects.
+ */
+public interface SuffixAwareBuildValidationHelper extends BuildValidationHelper {
+
+    /**
+     * File name suffixes, including the leading period (e.g. ".xls"), of the paths this helper supports
+     * @return
+     */
+    Set<String> getSuffixes();
+
+}
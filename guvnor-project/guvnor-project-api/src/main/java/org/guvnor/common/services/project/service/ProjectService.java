@@ -27,6 +27,8 @@ import org.jboss.errai.bus.server.annotations.Remote;
 import org.uberfire.backend.repositories.Repository;
 import org.uberfire.backend.vfs.Path;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -88,6 +90,21 @@ public interface ProjectService extends SupportsRead<ProjectImports>,
                         final POM pom,
                         final String baseURL );
 
+    /**
+     * Creates new projects. The files of all projects are written within a single IOService batch; whether the
+     * batch is recorded as one commit depends on the file system provider. Once the batch has ended a
+     * NewProjectEvent and NewPackageEvent are raised for each project, followed by a single ResourceBatchChangesEvent
+     * for the files of all projects. If creating a project fails, events are still raised for the projects created
+     * before it.
+     * @param repository
+     * @param poms POMs of the projects to create, keyed by project name
+     * @param baseURL the base URL where the Guvnor is hosted in web container
+     * @return The new projects, in the order of the POMs
+     */
+    List<Project> newProjects( final Repository repository,
+                               final Map<String, POM> poms,
+                               final String baseURL );
+
     /**
      * Creates a new package as a child of the provide package.
      * @param pkg
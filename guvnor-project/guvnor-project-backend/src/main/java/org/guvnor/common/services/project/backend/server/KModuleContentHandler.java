@@ -35,15 +35,17 @@ import org.guvnor.common.services.project.model.WorkItemHandlerModel;
 
 public class KModuleContentHandler {
 
+    private static final XStream xStream = createXStream();
+
     public KModuleModel toModel(String xml) {
-        return (KModuleModel) createXStream().fromXML(xml);
+        return (KModuleModel) xStream.fromXML(xml);
     }
 
     public String toString(KModuleModel model) {
-        return createXStream().toXML(model);
+        return xStream.toXML(model);
     }
 
-    private XStream createXStream() {
+    private static XStream createXStream() {
         XStream xStream = new XStream(new DomDriver());
 
         xStream.registerConverter(new KModuleConverter());
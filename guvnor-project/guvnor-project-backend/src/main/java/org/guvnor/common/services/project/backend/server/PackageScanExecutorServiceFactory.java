@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.project.backend.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * Producer of the ExecutorService used to scan the source paths of Projects for packages. The number of threads is
+ * fixed and the queue is bounded; tasks submitted when the queue is full are executed by the submitting thread.
+ */
+@ApplicationScoped
+public class PackageScanExecutorServiceFactory {
+
+    //One thread for each of a Project's source paths
+    private static final int THREADS = 4;
+
+    private static final int QUEUE_CAPACITY = 100;
+
+    private ThreadPoolExecutor service;
+
+    @PostConstruct
+    public void setup() {
+        service = new ThreadPoolExecutor( THREADS,
+                                          THREADS,
+                                          60,
+                                          TimeUnit.SECONDS,
+                                          new LinkedBlockingQueue<Runnable>( QUEUE_CAPACITY ),
+                                          new ThreadFactory() {
+                                              private final AtomicInteger count = new AtomicInteger();
+
+                                              @Override
+                                              public Thread newThread( final Runnable runnable ) {
+                                                  final Thread thread = new Thread( runnable,
+                                                                                    "package-scan-" + count.incrementAndGet() );
+                                                  thread.setDaemon( true );
+                                                  return thread;
+                                              }
+                                          },
+                                          new ThreadPoolExecutor.CallerRunsPolicy() );
+        service.allowCoreThreadTimeOut( true );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        service.shutdownNow();
+    }
+
+    /**
+     * Return the ExecutorService
+     * @return
+     */
+    public ExecutorService getExecutorService() {
+        return service;
+    }
+
+}
@@ -10,19 +10,21 @@ import javax.enterprise.context.Dependent;
 @Dependent
 public class ProjectConfigurationContentHandler {
 
+    private static final XStream xStream = createXStream();
+
     public ProjectConfigurationContentHandler() {
         // Weld needs this for proxying.
     }
 
     public String toString(ProjectImports configuration) {
-        return createXStream().toXML(configuration);
+        return xStream.toXML(configuration);
     }
 
     public ProjectImports toModel(String text) {
-        return (ProjectImports) createXStream().fromXML(text);
+        return (ProjectImports) xStream.fromXML(text);
     }
 
-    private XStream createXStream() {
+    private static XStream createXStream() {
         XStream xStream = new XStream();
         xStream.alias("configuration", ProjectImports.class);
         xStream.alias("import", Import.class);
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.backend.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.kie.commons.java.nio.file.Path;
+
+/**
+ * Trie, over the segments of Paths' URIs, of what is known about Paths: whether they exist, are files and are
+ * Project roots. Values are unknown until recorded. Invalidating a Path forgets everything known about it and the
+ * Paths beneath it, and anything known about its ancestors that could be changed by its addition or removal.
+ * <p>
+ * Paths can be changed other than through this service, so what is known about a Path is forgotten once it is older
+ * than the expiry. The index is cleared if it grows beyond its maximum number of Paths.
+ */
+class ProjectPathIndex {
+
+    private static final String POM_FILENAME = "pom.xml";
+    private static final String KMODULE_FILENAME = "kmodule.xml";
+
+    //Milliseconds after which what is known about a Path is forgotten
+    static final long DEFAULT_EXPIRY = 10000;
+
+    static final int DEFAULT_MAX_SIZE = 100000;
+
+    private final long expiry;
+    private final int maxSize;
+
+    private final Node root = new Node();
+
+    //Number of Paths in the trie, excluding the root
+    private int size;
+
+    ProjectPathIndex() {
+        this( DEFAULT_EXPIRY,
+              DEFAULT_MAX_SIZE );
+    }
+
+    ProjectPathIndex( final long expiry,
+                      final int maxSize ) {
+        this.expiry = expiry;
+        this.maxSize = maxSize;
+    }
+
+    synchronized Boolean exists( final Path path ) {
+        final Node node = findCurrent( path );
+        return ( node == null ? null : node.exists );
+    }
+
+    synchronized void setExists( final Path path,
+                                 final boolean exists ) {
+        getOrCreate( path ).exists = exists;
+    }
+
+    synchronized Boolean isRegularFile( final Path path ) {
+        final Node node = findCurrent( path );
+        return ( node == null ? null : node.isRegularFile );
+    }
+
+    synchronized void setRegularFile( final Path path,
+                                      final boolean isRegularFile ) {
+        final Node node = getOrCreate( path );
+        node.isRegularFile = isRegularFile;
+        if ( isRegularFile ) {
+            node.exists = true;
+        }
+    }
+
+    synchronized Boolean isProjectRoot( final Path path ) {
+        final Node node = findCurrent( path );
+        return ( node == null ? null : node.isProjectRoot );
+    }
+
+    synchronized void setProjectRoot( final Path path,
+                                      final boolean isProjectRoot ) {
+        getOrCreate( path ).isProjectRoot = isProjectRoot;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Forget what is known about a Path that has been added, removed or changed
+     * @param path
+     */
+    synchronized void invalidate( final Path path ) {
+        final List<String> segments = getSegments( path );
+        final String fileName = segments.get( segments.size() - 1 );
+        final boolean isProjectDescriptor = fileName.equals( POM_FILENAME ) || fileName.equals( KMODULE_FILENAME );
+
+        Node node = root;
+        for ( int i = 0; i < segments.size() - 1; i++ ) {
+            node = node.children.get( segments.get( i ) );
+            if ( node == null ) {
+                return;
+            }
+            //Adding a Path may create its ancestors or make one a Project root
+            if ( Boolean.FALSE.equals( node.exists ) ) {
+                node.exists = null;
+            }
+            if ( Boolean.FALSE.equals( node.isProjectRoot ) || isProjectDescriptor ) {
+                node.isProjectRoot = null;
+            }
+        }
+        final Node removed = node.children.remove( fileName );
+        if ( removed != null ) {
+            size -= removed.count();
+        }
+    }
+
+    synchronized void clear() {
+        root.children.clear();
+        size = 0;
+    }
+
+    //Find the Path's Node, forgetting what is known about the Path if it has expired
+    private Node findCurrent( final Path path ) {
+        final Node node = find( path );
+        if ( node == null ) {
+            return null;
+        }
+        if ( System.currentTimeMillis() - node.recordedTime >= expiry ) {
+            node.exists = null;
+            node.isRegularFile = null;
+            node.isProjectRoot = null;
+            return null;
+        }
+        return node;
+    }
+
+    private Node find( final Path path ) {
+        Node node = root;
+        for ( String segment : getSegments( path ) ) {
+            node = node.children.get( segment );
+            if ( node == null ) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    //Find or create the Path's Node, to record what is known about it
+    private Node getOrCreate( final Path path ) {
+        final List<String> segments = getSegments( path );
+        if ( size + segments.size() > maxSize ) {
+            clear();
+        }
+        Node node = root;
+        for ( String segment : segments ) {
+            Node child = node.children.get( segment );
+            if ( child == null ) {
+                child = new Node();
+                node.children.put( segment,
+                                   child );
+                size++;
+            }
+            node = child;
+        }
+        final long now = System.currentTimeMillis();
+        if ( now - node.recordedTime >= expiry ) {
+            node.exists = null;
+            node.isRegularFile = null;
+            node.isProjectRoot = null;
+        }
+        node.recordedTime = now;
+        return node;
+    }
+
+    private static List<String> getSegments( final Path path ) {
+        final String uri = path.toUri().toString();
+        final List<String> segments = new ArrayList<String>();
+        int start = 0;
+        for ( int i = 0; i < uri.length(); i++ ) {
+            if ( uri.charAt( i ) == '/' ) {
+                if ( i > start ) {
+                    segments.add( uri.substring( start,
+                                                 i ) );
+                }
+                start = i + 1;
+            }
+        }
+        if ( start < uri.length() ) {
+            segments.add( uri.substring( start ) );
+        }
+        return segments;
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> children = new HashMap<String, Node>();
+        private Boolean exists;
+        private Boolean isRegularFile;
+        private Boolean isProjectRoot;
+        private long recordedTime;
+
+        //Number of Paths in the sub-trie rooted at this Node
+        private int count() {
+            int count = 1;
+            for ( Node child : children.values() ) {
+                count += child.count();
+            }
+            return count;
+        }
+
+    }
+
+}
@@ -17,8 +17,13 @@
 package org.guvnor.common.services.project.backend.server;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Event;
+import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import javax.inject.Named;
 
@@ -52,7 +57,15 @@ import org.uberfire.backend.server.config.ConfigurationFactory;
 import org.uberfire.backend.server.config.ConfigurationService;
 import org.uberfire.backend.server.util.Paths;
 import org.uberfire.backend.vfs.Path;
+import org.uberfire.rpc.SessionInfo;
 import org.uberfire.security.Identity;
+import org.uberfire.workbench.events.ChangeType;
+import org.uberfire.workbench.events.ResourceAddedEvent;
+import org.uberfire.workbench.events.ResourceBatchChangesEvent;
+import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceCopiedEvent;
+import org.uberfire.workbench.events.ResourceDeletedEvent;
+import org.uberfire.workbench.events.ResourceRenamedEvent;
 
 @Service
 @ApplicationScoped
@@ -72,6 +85,12 @@ public class ProjectServiceImpl
 
     private static String[] sourcePaths = { MAIN_SRC_PATH, MAIN_RESOURCES_PATH, TEST_SRC_PATH, TEST_RESOURCES_PATH };
 
+    //Milliseconds after which Project configurations are re-loaded, as they can be changed other than by this service
+    private static final long PROJECT_CONFIG_EXPIRY = 10000;
+
+    //Seconds to wait for the scans of a Project's source paths for packages
+    private static final long PACKAGE_SCAN_TIMEOUT = 60;
+
     private IOService ioService;
     private Paths paths;
 
@@ -79,14 +98,24 @@ public class ProjectServiceImpl
     private KModuleService kModuleService;
     private MetadataService metadataService;
     private ProjectConfigurationContentHandler projectConfigurationContentHandler;
+    private PackageScanExecutorServiceFactory packageScanExecutorServiceFactory;
 
     private ConfigurationService configurationService;
     private ConfigurationFactory configurationFactory;
 
     private Event<NewProjectEvent> newProjectEvent;
     private Event<NewPackageEvent> newPackageEvent;
+    private Event<ResourceBatchChangesEvent> resourceBatchChangesEvent;
 
     private Identity identity;
+    private SessionInfo sessionInfo;
+
+    //What is known about Paths, so Projects and Packages can be resolved without repeatedly accessing the VFS
+    private final ProjectPathIndex pathIndex = new ProjectPathIndex();
+
+    //Project configurations keyed by the URI of the Project root
+    private volatile Map<String, ConfigGroup> projectConfigs;
+    private volatile long projectConfigsLoadTime;
 
     public ProjectServiceImpl() {
         // Boilerplate sacrifice for Weld
@@ -99,22 +128,28 @@ public class ProjectServiceImpl
                                final KModuleService kModuleService,
                                final MetadataService metadataService,
                                final ProjectConfigurationContentHandler projectConfigurationContentHandler,
+                               final PackageScanExecutorServiceFactory packageScanExecutorServiceFactory,
                                final ConfigurationService configurationService,
                                final ConfigurationFactory configurationFactory,
                                final Event<NewProjectEvent> newProjectEvent,
                                final Event<NewPackageEvent> newPackageEvent,
-                               final Identity identity ) {
+                               final Event<ResourceBatchChangesEvent> resourceBatchChangesEvent,
+                               final Identity identity,
+                               final SessionInfo sessionInfo ) {
         this.ioService = ioService;
         this.paths = paths;
         this.pomService = pomService;
         this.kModuleService = kModuleService;
         this.metadataService = metadataService;
         this.projectConfigurationContentHandler = projectConfigurationContentHandler;
+        this.packageScanExecutorServiceFactory = packageScanExecutorServiceFactory;
         this.configurationService = configurationService;
         this.configurationFactory = configurationFactory;
         this.newProjectEvent = newProjectEvent;
         this.newPackageEvent = newPackageEvent;
+        this.resourceBatchChangesEvent = resourceBatchChangesEvent;
         this.identity = identity;
+        this.sessionInfo = sessionInfo;
     }
 
     @Override
@@ -134,13 +169,15 @@ public class ProjectServiceImpl
             //Check if resource is the project root
             org.kie.commons.java.nio.file.Path path = paths.convert( resource ).normalize();
 
-            //A project root is the folder containing the pom.xml file. This will be the parent of the "src" folder
-            if ( Files.isRegularFile( path ) ) {
-                path = path.getParent();
-            }
-            if ( hasPom( path ) && hasKModule( path ) ) {
+            //A project root is the folder containing the pom.xml file. This will be the parent of the "src" folder.
+            //Files cannot be project roots, so whether the resource is a file only matters if its parent is a root.
+            if ( isProjectRoot( path ) ) {
                 return makeProject( path );
             }
+            final org.kie.commons.java.nio.file.Path parent = path.getParent();
+            if ( parent != null && isProjectRoot( parent ) && isRegularFile( path ) ) {
+                return makeProject( parent );
+            }
             while ( path.getNameCount() > 0 && !path.getFileName().toString().equals( SOURCE_FILENAME ) ) {
                 path = path.getParent();
             }
@@ -151,10 +188,7 @@ public class ProjectServiceImpl
             if ( path.getNameCount() == 0 || path == null ) {
                 return null;
             }
-            if ( !hasPom( path ) ) {
-                return null;
-            }
-            if ( !hasKModule( path ) ) {
+            if ( !isProjectRoot( path ) ) {
                 return null;
             }
             return makeProject( path );
@@ -222,79 +256,111 @@ public class ProjectServiceImpl
     @Override
     public Set<Package> resolvePackages( final Project project ) {
         final Set<Package> packages = new HashSet<Package>();
-        final Set<String> packageNames = new HashSet<String>();
         if ( project == null ) {
             return packages;
         }
-        //Build a set of all package names across /src/main/java, /src/main/resources, /src/test/java and /src/test/resources paths
-        //It is possible (if the project was not created within the workbench that some packages only exist in certain paths)
-        final Path projectRoot = project.getRootPath();
-        final org.kie.commons.java.nio.file.Path nioProjectRootPath = paths.convert( projectRoot );
-        for ( String src : sourcePaths ) {
-            final org.kie.commons.java.nio.file.Path nioPackageRootSrcPath = nioProjectRootPath.resolve( src );
-            packageNames.addAll( getPackageNames( nioProjectRootPath,
-                    nioPackageRootSrcPath ) );
-        }
-
-        //Construct Package objects for each package name
-        final java.util.Set<String> resolvedPackages = new java.util.HashSet<String>();
-        for ( String packagePathSuffix : packageNames ) {
+        try {
+            //Scan /src/main/java, /src/main/resources, /src/test/java and /src/test/resources concurrently.
+            //It is possible (if the project was not created within the workbench that some packages only exist in certain paths)
+            final Path projectRoot = project.getRootPath();
+            final org.kie.commons.java.nio.file.Path nioProjectRootPath = paths.convert( projectRoot );
+            final List<Future<Set<String>>> scans = new ArrayList<Future<Set<String>>>( sourcePaths.length );
             for ( String src : sourcePaths ) {
-                final org.kie.commons.java.nio.file.Path nioPackagePath = nioProjectRootPath.resolve( src ).resolve( packagePathSuffix );
-                if ( Files.exists( nioPackagePath ) && !resolvedPackages.contains( packagePathSuffix ) ) {
-                    packages.add( resolvePackage( paths.convert(nioPackagePath, false) ) );
-                    resolvedPackages.add( packagePathSuffix );
+                final org.kie.commons.java.nio.file.Path nioPackageRootSrcPath = nioProjectRootPath.resolve( src );
+                scans.add( packageScanExecutorServiceFactory.getExecutorService().submit( new Callable<Set<String>>() {
+                    @Override
+                    public Set<String> call() throws Exception {
+                        final Set<String> packageNames = new HashSet<String>();
+                        if ( exists( nioPackageRootSrcPath ) ) {
+                            addPackageNames( nioPackageRootSrcPath,
+                                             nioPackageRootSrcPath,
+                                             packageNames );
+                        }
+                        return packageNames;
+                    }
+                } ) );
+            }
+
+            //Merge the scans, recording in which source paths each package exists
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( PACKAGE_SCAN_TIMEOUT );
+            final Map<String, boolean[]> packageNames = new HashMap<String, boolean[]>();
+            for ( int i = 0; i < sourcePaths.length; i++ ) {
+                final Set<String> scan;
+                try {
+                    scan = scans.get( i ).get( Math.max( 0,
+                                                         deadline - System.nanoTime() ),
+                                               TimeUnit.NANOSECONDS );
+                } catch ( TimeoutException te ) {
+                    for ( Future<Set<String>> future : scans ) {
+                        future.cancel( true );
+                    }
+                    throw te;
+                }
+                for ( String packagePathSuffix : scan ) {
+                    boolean[] sources = packageNames.get( packagePathSuffix );
+                    if ( sources == null ) {
+                        sources = new boolean[ sourcePaths.length ];
+                        packageNames.put( packagePathSuffix,
+                                          sources );
+                    }
+                    sources[ i ] = true;
                 }
             }
-        }
 
-        return packages;
-    }
+            //Construct Package objects for each package name from the scans
+            for ( Map.Entry<String, boolean[]> e : packageNames.entrySet() ) {
+                packages.add( makePackage( project,
+                                           nioProjectRootPath,
+                                           e.getKey(),
+                                           e.getValue() ) );
+            }
+            return packages;
 
-    private Set<String> getPackageNames( final org.kie.commons.java.nio.file.Path nioProjectRootPath,
-                                         final org.kie.commons.java.nio.file.Path nioPackageSrcPath ) {
-        final Set<String> packageNames = new HashSet<String>();
-        if ( !Files.exists( nioPackageSrcPath ) ) {
-            return packageNames;
+        } catch ( Exception e ) {
+            throw ExceptionUtilities.handleException( e );
         }
-        packageNames.add( getPackagePathSuffix( nioProjectRootPath,
-                nioPackageSrcPath ) );
+    }
+
+    //Add the paths, relative to the source path, of the package and its sub-packages
+    private void addPackageNames( final org.kie.commons.java.nio.file.Path nioPackageRootSrcPath,
+                                  final org.kie.commons.java.nio.file.Path nioPackageSrcPath,
+                                  final Set<String> packageNames ) {
+        packageNames.add( nioPackageRootSrcPath.relativize( nioPackageSrcPath ).toString() );
         final LinkedMetaInfFolderFilter metaDataFileFilter = new LinkedMetaInfFolderFilter();
         final DirectoryStream<org.kie.commons.java.nio.file.Path> nioChildPackageSrcPaths = ioService.newDirectoryStream( nioPackageSrcPath,
-                metaDataFileFilter );
+                                                                                                                          metaDataFileFilter );
         for ( org.kie.commons.java.nio.file.Path nioChildPackageSrcPath : nioChildPackageSrcPaths ) {
             if ( Files.isDirectory( nioChildPackageSrcPath ) ) {
-                packageNames.addAll( getPackageNames( nioProjectRootPath,
-                        nioChildPackageSrcPath ) );
+                pathIndex.setExists( nioChildPackageSrcPath,
+                                     true );
+                pathIndex.setRegularFile( nioChildPackageSrcPath,
+                                          false );
+                addPackageNames( nioPackageRootSrcPath,
+                                 nioChildPackageSrcPath,
+                                 packageNames );
             }
         }
-        return packageNames;
     }
 
-    private String getPackagePathSuffix( final org.kie.commons.java.nio.file.Path nioProjectRootPath,
-                                         final org.kie.commons.java.nio.file.Path nioPackagePath ) {
-        final org.kie.commons.java.nio.file.Path nioMainSrcPath = nioProjectRootPath.resolve( MAIN_SRC_PATH );
-        final org.kie.commons.java.nio.file.Path nioTestSrcPath = nioProjectRootPath.resolve( TEST_SRC_PATH );
-        final org.kie.commons.java.nio.file.Path nioMainResourcesPath = nioProjectRootPath.resolve( MAIN_RESOURCES_PATH );
-        final org.kie.commons.java.nio.file.Path nioTestResourcesPath = nioProjectRootPath.resolve( TEST_RESOURCES_PATH );
-
-        String packageName = null;
-        org.kie.commons.java.nio.file.Path packagePath = null;
-        if ( nioPackagePath.startsWith( nioMainSrcPath ) ) {
-            packagePath = nioMainSrcPath.relativize( nioPackagePath );
-            packageName = packagePath.toString();
-        } else if ( nioPackagePath.startsWith( nioTestSrcPath ) ) {
-            packagePath = nioTestSrcPath.relativize( nioPackagePath );
-            packageName = packagePath.toString();
-        } else if ( nioPackagePath.startsWith( nioMainResourcesPath ) ) {
-            packagePath = nioMainResourcesPath.relativize( nioPackagePath );
-            packageName = packagePath.toString();
-        } else if ( nioPackagePath.startsWith( nioTestResourcesPath ) ) {
-            packagePath = nioTestResourcesPath.relativize( nioPackagePath );
-            packageName = packagePath.toString();
+    //Make a Package from the path of the package relative to the source paths and the source paths in which it exists
+    private Package makePackage( final Project project,
+                                 final org.kie.commons.java.nio.file.Path nioProjectRootPath,
+                                 final String packagePathSuffix,
+                                 final boolean[] sources ) {
+        final Path[] packagePaths = new Path[ sourcePaths.length ];
+        for ( int i = 0; i < sourcePaths.length; i++ ) {
+            packagePaths[ i ] = paths.convert( nioProjectRootPath.resolve( sourcePaths[ i ] ).resolve( packagePathSuffix ),
+                                               sources[ i ] );
         }
-
-        return packageName;
+        final String packageName = packagePathSuffix.replaceAll( "/",
+                                                                 "." );
+        return new Package( project.getRootPath(),
+                            packagePaths[ 0 ],
+                            packagePaths[ 2 ],
+                            packagePaths[ 1 ],
+                            packagePaths[ 3 ],
+                            packageName,
+                            getPackageDisplayName( packageName ) );
     }
 
     private Package makePackage( final Project project,
@@ -308,7 +374,7 @@ public class ProjectServiceImpl
 
         org.kie.commons.java.nio.file.Path nioResource = paths.convert( resource );
 
-        if ( Files.isRegularFile( nioResource ) ) {
+        if ( isRegularFile( nioResource ) ) {
             nioResource = nioResource.getParent();
         }
 
@@ -337,16 +403,16 @@ public class ProjectServiceImpl
             return null;
         }
 
-        boolean includeAttributes = Files.exists( nioMainSrcPath.resolve( packagePath ) );
+        boolean includeAttributes = exists( nioMainSrcPath.resolve( packagePath ) );
         final Path mainSrcPath = paths.convert( nioMainSrcPath.resolve( packagePath ),
                                                 includeAttributes );
-        includeAttributes = Files.exists( nioTestSrcPath.resolve( packagePath ) );
+        includeAttributes = exists( nioTestSrcPath.resolve( packagePath ) );
         final Path testSrcPath = paths.convert( nioTestSrcPath.resolve( packagePath ),
                                                 includeAttributes );
-        includeAttributes = Files.exists( nioMainResourcesPath.resolve( packagePath ) );
+        includeAttributes = exists( nioMainResourcesPath.resolve( packagePath ) );
         final Path mainResourcesPath = paths.convert( nioMainResourcesPath.resolve( packagePath ),
                                                       includeAttributes );
-        includeAttributes = Files.exists( nioTestResourcesPath.resolve( packagePath ) );
+        includeAttributes = exists( nioTestResourcesPath.resolve( packagePath ) );
         final Path testResourcesPath = paths.convert( nioTestResourcesPath.resolve( packagePath ),
                                                       includeAttributes );
 
@@ -408,45 +474,16 @@ public class ProjectServiceImpl
                                final POM pom,
                                final String baseUrl ) {
         try {
-            //Projects are always created in the FS root
-            final Path fsRoot = repository.getRoot();
-            final Path projectRootPath = paths.convert( paths.convert( fsRoot ).resolve( projectName ),
-                                                        false );
-
-            //Set-up project structure and KModule.xml
-            kModuleService.setUpKModuleStructure( projectRootPath );
-
-            //Create POM.xml
-            pomService.create( projectRootPath,
-                               baseUrl,
-                               pom );
-
-            //Create Project configuration
-            final Path projectConfigPath = paths.convert( paths.convert( projectRootPath ).resolve( PROJECT_IMPORTS_PATH ),
-                                                          false );
-            ioService.createFile( paths.convert( projectConfigPath ) );
-            ioService.write( paths.convert( projectConfigPath ),
-                             projectConfigurationContentHandler.toString( new ProjectImports() ) );
-
             //Raise an event for the new project
-            final Project project = resolveProject( projectRootPath );
+            final Project project = doNewProject( repository,
+                                                  projectName,
+                                                  pom,
+                                                  baseUrl );
             newProjectEvent.fire( new NewProjectEvent( project ) );
 
-            //Create a default workspace based on the GAV
-            final String legalJavaGroupId[] = IdentifierUtils.convertMavenIdentifierToJavaIdentifier( pom.getGav().getGroupId().split( "\\.",
-                                                                                                                                       -1 ) );
-            final String legalJavaArtifactId[] = IdentifierUtils.convertMavenIdentifierToJavaIdentifier( pom.getGav().getArtifactId().split( "\\.",
-                                                                                                                                             -1 ) );
-            final String defaultWorkspacePath = StringUtils.join( legalJavaGroupId,
-                                                                  "/" ) + "/" + StringUtils.join( legalJavaArtifactId,
-                                                                                                  "/" );
-            final Path defaultPackagePath = paths.convert( paths.convert( projectRootPath ).resolve( MAIN_RESOURCES_PATH ),
-                                                           false );
-            final Package defaultPackage = resolvePackage( defaultPackagePath );
-            final Package defaultWorkspacePackage = doNewPackage( defaultPackage,
-                                                                  defaultWorkspacePath );
-
             //Raise an event for the new project's default workspace
+            final Package defaultWorkspacePackage = doNewDefaultWorkspacePackage( project,
+                                                                                  pom );
             newPackageEvent.fire( new NewPackageEvent( defaultWorkspacePackage ) );
 
             //Return new project
@@ -457,6 +494,109 @@ public class ProjectServiceImpl
         }
     }
 
+    @Override
+    public List<Project> newProjects( final Repository repository,
+                                      final Map<String, POM> poms,
+                                      final String baseUrl ) {
+        try {
+            final List<Project> projects = new ArrayList<Project>( poms.size() );
+            final List<Package> defaultWorkspacePackages = new ArrayList<Package>( poms.size() );
+
+            //Write the files of all projects within one IOService batch. Files written before a failure are kept
+            //when the batch ends, so events are raised for the projects created before the failure.
+            RuntimeException failure = null;
+            ioService.startBatch();
+            try {
+                for ( Map.Entry<String, POM> e : poms.entrySet() ) {
+                    final Project project = doNewProject( repository,
+                                                          e.getKey(),
+                                                          e.getValue(),
+                                                          baseUrl );
+                    projects.add( project );
+                    defaultWorkspacePackages.add( doNewDefaultWorkspacePackage( project,
+                                                                                e.getValue() ) );
+                }
+            } catch ( RuntimeException e ) {
+                failure = e;
+            } finally {
+                ioService.endBatch();
+            }
+
+            //Raise events for the new projects and their default workspaces
+            final Set<ResourceChange> changes = new HashSet<ResourceChange>();
+            for ( int i = 0; i < projects.size(); i++ ) {
+                final Project project = projects.get( i );
+                newProjectEvent.fire( new NewProjectEvent( project ) );
+                if ( i < defaultWorkspacePackages.size() ) {
+                    newPackageEvent.fire( new NewPackageEvent( defaultWorkspacePackages.get( i ) ) );
+                }
+                for ( Path path : new Path[]{ project.getPomXMLPath(), project.getKModuleXMLPath(), project.getImportsPath() } ) {
+                    changes.add( new ResourceChange( ChangeType.ADD,
+                                                     path,
+                                                     sessionInfo ) );
+                }
+            }
+            if ( !changes.isEmpty() ) {
+                resourceBatchChangesEvent.fire( new ResourceBatchChangesEvent( changes ) );
+            }
+            if ( failure != null ) {
+                throw failure;
+            }
+
+            //Return new projects
+            return projects;
+
+        } catch ( Exception e ) {
+            throw ExceptionUtilities.handleException( e );
+        }
+    }
+
+    private Project doNewProject( final Repository repository,
+                                  final String projectName,
+                                  final POM pom,
+                                  final String baseUrl ) {
+        //Projects are always created in the FS root
+        final Path fsRoot = repository.getRoot();
+        final Path projectRootPath = paths.convert( paths.convert( fsRoot ).resolve( projectName ),
+                                                    false );
+
+        //Set-up project structure and KModule.xml
+        pathIndex.invalidate( paths.convert( projectRootPath ) );
+        kModuleService.setUpKModuleStructure( projectRootPath );
+
+        //Create POM.xml
+        pomService.create( projectRootPath,
+                           baseUrl,
+                           pom );
+
+        //Create Project configuration
+        final Path projectConfigPath = paths.convert( paths.convert( projectRootPath ).resolve( PROJECT_IMPORTS_PATH ),
+                                                      false );
+        ioService.createFile( paths.convert( projectConfigPath ) );
+        ioService.write( paths.convert( projectConfigPath ),
+                         projectConfigurationContentHandler.toString( new ProjectImports() ) );
+
+        pathIndex.invalidate( paths.convert( projectRootPath ) );
+        return resolveProject( projectRootPath );
+    }
+
+    //Create a default workspace based on the GAV
+    private Package doNewDefaultWorkspacePackage( final Project project,
+                                                  final POM pom ) {
+        final String legalJavaGroupId[] = IdentifierUtils.convertMavenIdentifierToJavaIdentifier( pom.getGav().getGroupId().split( "\\.",
+                                                                                                                                   -1 ) );
+        final String legalJavaArtifactId[] = IdentifierUtils.convertMavenIdentifierToJavaIdentifier( pom.getGav().getArtifactId().split( "\\.",
+                                                                                                                                         -1 ) );
+        final String defaultWorkspacePath = StringUtils.join( legalJavaGroupId,
+                                                              "/" ) + "/" + StringUtils.join( legalJavaArtifactId,
+                                                                                              "/" );
+        final Path defaultPackagePath = paths.convert( paths.convert( project.getRootPath() ).resolve( MAIN_RESOURCES_PATH ),
+                                                       false );
+        final Package defaultPackage = resolvePackage( defaultPackagePath );
+        return doNewPackage( defaultPackage,
+                             defaultWorkspacePath );
+    }
+
     @Override
     public Package newPackage( final Package parentPackage,
                                final String packageName ) {
@@ -496,18 +636,22 @@ public class ProjectServiceImpl
         final org.kie.commons.java.nio.file.Path nioMainSrcPackagePath = paths.convert( mainSrcPath ).resolve( newPackageName );
         if ( !Files.exists( nioMainSrcPackagePath ) ) {
             pkgPath = paths.convert( ioService.createDirectory( nioMainSrcPackagePath ) );
+            pathIndex.invalidate( nioMainSrcPackagePath );
         }
         final org.kie.commons.java.nio.file.Path nioTestSrcPackagePath = paths.convert( testSrcPath ).resolve( newPackageName );
         if ( !Files.exists( nioTestSrcPackagePath ) ) {
             pkgPath = paths.convert( ioService.createDirectory( nioTestSrcPackagePath ) );
+            pathIndex.invalidate( nioTestSrcPackagePath );
         }
         final org.kie.commons.java.nio.file.Path nioMainResourcesPackagePath = paths.convert( mainResourcesPath ).resolve( newPackageName );
         if ( !Files.exists( nioMainResourcesPackagePath ) ) {
             pkgPath = paths.convert( ioService.createDirectory( nioMainResourcesPackagePath ) );
+            pathIndex.invalidate( nioMainResourcesPackagePath );
         }
         final org.kie.commons.java.nio.file.Path nioTestResourcesPackagePath = paths.convert( testResourcesPath ).resolve( newPackageName );
         if ( !Files.exists( nioTestResourcesPackagePath ) ) {
             pkgPath = paths.convert( ioService.createDirectory( nioTestResourcesPackagePath ) );
+            pathIndex.invalidate( nioTestResourcesPackagePath );
         }
 
         //If pkgPath is null the package already existed in src/main/java, scr/main/resources, src/test/java and src/test/resources
@@ -520,6 +664,65 @@ public class ProjectServiceImpl
         return newPackage;
     }
 
+    private boolean isProjectRoot( final org.kie.commons.java.nio.file.Path path ) {
+        Boolean isProjectRoot = pathIndex.isProjectRoot( path );
+        if ( isProjectRoot == null ) {
+            isProjectRoot = hasPom( path ) && hasKModule( path );
+            pathIndex.setProjectRoot( path,
+                                      isProjectRoot );
+        }
+        return isProjectRoot;
+    }
+
+    private boolean isRegularFile( final org.kie.commons.java.nio.file.Path path ) {
+        Boolean isRegularFile = pathIndex.isRegularFile( path );
+        if ( isRegularFile == null ) {
+            isRegularFile = Files.isRegularFile( path );
+            pathIndex.setRegularFile( path,
+                                      isRegularFile );
+        }
+        return isRegularFile;
+    }
+
+    private boolean exists( final org.kie.commons.java.nio.file.Path path ) {
+        Boolean exists = pathIndex.exists( path );
+        if ( exists == null ) {
+            exists = Files.exists( path );
+            pathIndex.setExists( path,
+                                 exists );
+        }
+        return exists;
+    }
+
+    public void onResourceAdded( @Observes final ResourceAddedEvent event ) {
+        invalidate( event.getPath() );
+    }
+
+    public void onResourceDeleted( @Observes final ResourceDeletedEvent event ) {
+        invalidate( event.getPath() );
+    }
+
+    public void onResourceRenamed( @Observes final ResourceRenamedEvent event ) {
+        invalidate( event.getSourcePath() );
+        invalidate( event.getDestinationPath() );
+    }
+
+    public void onResourceCopied( @Observes final ResourceCopiedEvent event ) {
+        invalidate( event.getDestinationPath() );
+    }
+
+    public void onBatchResourceChanges( @Observes final ResourceBatchChangesEvent event ) {
+        for ( ResourceChange change : event.getBatch() ) {
+            invalidate( change.getPath() );
+        }
+    }
+
+    private void invalidate( final Path path ) {
+        if ( path != null ) {
+            pathIndex.invalidate( paths.convert( path ) );
+        }
+    }
+
     private boolean hasPom( final org.kie.commons.java.nio.file.Path path ) {
         final org.kie.commons.java.nio.file.Path pomPath = path.resolve( POM_PATH );
         return Files.exists( pomPath );
@@ -582,6 +785,7 @@ public class ProjectServiceImpl
             thisProjectConfig.addConfigItem( configurationFactory.newConfigItem( "security:roles",
                                                                                  new ArrayList<String>() ) );
             configurationService.addConfiguration( thisProjectConfig );
+            invalidateProjectConfigs();
         }
 
         if ( thisProjectConfig != null ) {
@@ -589,6 +793,7 @@ public class ProjectServiceImpl
             roles.getValue().add( role );
 
             configurationService.updateConfiguration( thisProjectConfig );
+            invalidateProjectConfigs();
 
         } else {
             throw new IllegalArgumentException( "Project " + project.getProjectName() + " not found" );
@@ -606,6 +811,7 @@ public class ProjectServiceImpl
             roles.getValue().remove( role );
 
             configurationService.updateConfiguration( thisProjectConfig );
+            invalidateProjectConfigs();
 
         } else {
             throw new IllegalArgumentException( "Project " + project.getProjectName() + " not found" );
@@ -613,15 +819,33 @@ public class ProjectServiceImpl
     }
 
     protected ConfigGroup findProjectConfig( final Path projectRoot ) {
+        return getProjectConfigs().get( projectRoot.toURI() );
+    }
+
+    private Map<String, ConfigGroup> getProjectConfigs() {
+        Map<String, ConfigGroup> configs = projectConfigs;
+        final long now = System.currentTimeMillis();
+        if ( configs != null && now - projectConfigsLoadTime < PROJECT_CONFIG_EXPIRY ) {
+            return configs;
+        }
+        configs = new HashMap<String, ConfigGroup>();
         final Collection<ConfigGroup> groups = configurationService.getConfiguration( ConfigType.PROJECT );
         if ( groups != null ) {
             for ( ConfigGroup groupConfig : groups ) {
-                if ( groupConfig.getName().equals( projectRoot.toURI() ) ) {
-                    return groupConfig;
+                //The first group for a Project takes precedence
+                if ( !configs.containsKey( groupConfig.getName() ) ) {
+                    configs.put( groupConfig.getName(),
+                                 groupConfig );
                 }
             }
         }
-        return null;
+        projectConfigsLoadTime = now;
+        projectConfigs = configs;
+        return configs;
+    }
+
+    private void invalidateProjectConfigs() {
+        projectConfigs = null;
     }
 
 }
\ No newline at end of file
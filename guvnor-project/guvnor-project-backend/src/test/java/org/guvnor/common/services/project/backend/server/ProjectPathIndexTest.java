@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.project.backend.server;
+
+import java.net.URI;
+
+import org.junit.Test;
+import org.kie.commons.java.nio.file.Path;
+import org.kie.commons.java.nio.fs.file.SimpleFileSystemProvider;
+
+import static org.junit.Assert.*;
+
+public class ProjectPathIndexTest {
+
+    private final SimpleFileSystemProvider fs = new SimpleFileSystemProvider();
+
+    private final ProjectPathIndex index = new ProjectPathIndex();
+
+    @Test
+    public void testInvalidateForgetsPathAndDescendants() throws Exception {
+        index.setExists( path( "/project/src" ),
+                         true );
+        index.setRegularFile( path( "/project/src/rule.drl" ),
+                              true );
+        index.setExists( path( "/project/other" ),
+                         true );
+
+        index.invalidate( path( "/project/src" ) );
+
+        assertNull( index.exists( path( "/project/src" ) ) );
+        assertNull( index.isRegularFile( path( "/project/src/rule.drl" ) ) );
+        assertEquals( Boolean.TRUE,
+                      index.exists( path( "/project/other" ) ) );
+    }
+
+    @Test
+    public void testInvalidateForgetsAncestorsNotExisting() throws Exception {
+        index.setExists( path( "/project" ),
+                         true );
+        index.setExists( path( "/project/src" ),
+                         false );
+        index.setExists( path( "/project/src/main/rule.drl" ),
+                         false );
+
+        //Adding the file creates its ancestors
+        index.invalidate( path( "/project/src/main/rule.drl" ) );
+
+        assertEquals( Boolean.TRUE,
+                      index.exists( path( "/project" ) ) );
+        assertNull( index.exists( path( "/project/src" ) ) );
+        assertNull( index.exists( path( "/project/src/main/rule.drl" ) ) );
+    }
+
+    @Test
+    public void testInvalidateForgetsAncestorsNotProjectRoots() throws Exception {
+        index.setProjectRoot( path( "/project" ),
+                              false );
+        index.setProjectRoot( path( "/project/src" ),
+                              true );
+
+        index.invalidate( path( "/project/src/main/rule.drl" ) );
+
+        //Adding a file other than a Project descriptor can only make an ancestor a Project root
+        assertNull( index.isProjectRoot( path( "/project" ) ) );
+        assertEquals( Boolean.TRUE,
+                      index.isProjectRoot( path( "/project/src" ) ) );
+    }
+
+    @Test
+    public void testInvalidateProjectDescriptorForgetsProjectRoots() throws Exception {
+        index.setProjectRoot( path( "/project" ),
+                              true );
+        index.setProjectRoot( path( "/project/src/main/resources" ),
+                              false );
+
+        //Removing the kmodule.xml means the Project root is no longer a Project root
+        index.invalidate( path( "/project/src/main/resources/META-INF/kmodule.xml" ) );
+        assertNull( index.isProjectRoot( path( "/project" ) ) );
+        assertNull( index.isProjectRoot( path( "/project/src/main/resources" ) ) );
+
+        index.setProjectRoot( path( "/project" ),
+                              true );
+        index.invalidate( path( "/project/pom.xml" ) );
+        assertNull( index.isProjectRoot( path( "/project" ) ) );
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        final ProjectPathIndex index = new ProjectPathIndex( 0,
+                                                             ProjectPathIndex.DEFAULT_MAX_SIZE );
+        index.setExists( path( "/project" ),
+                         false );
+        assertNull( index.exists( path( "/project" ) ) );
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        final ProjectPathIndex index = new ProjectPathIndex( ProjectPathIndex.DEFAULT_EXPIRY,
+                                                             10 );
+        for ( int i = 0; i < 100; i++ ) {
+            index.setExists( path( "/project/file" + i ),
+                             true );
+            assertTrue( index.size() <= 10 );
+        }
+        assertEquals( Boolean.TRUE,
+                      index.exists( path( "/project/file99" ) ) );
+
+        //Only the Path of the file system's root remains
+        index.invalidate( path( "/project" ) );
+        assertNull( index.exists( path( "/project/file99" ) ) );
+        assertEquals( 1,
+                      index.size() );
+    }
+
+    private Path path( final String path ) {
+        return fs.getPath( URI.create( "file://" + path ) );
+    }
+
+}
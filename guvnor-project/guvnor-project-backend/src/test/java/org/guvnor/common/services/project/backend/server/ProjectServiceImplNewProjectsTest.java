@@ -0,0 +1,202 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.project.backend.server;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.inject.Singleton;
+
+import org.guvnor.common.services.project.events.NewPackageEvent;
+import org.guvnor.common.services.project.events.NewProjectEvent;
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.common.services.project.model.POM;
+import org.guvnor.common.services.project.model.Project;
+import org.guvnor.common.services.project.service.ProjectService;
+import org.jboss.weld.environment.se.StartMain;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.commons.java.nio.fs.file.SimpleFileSystemProvider;
+import org.uberfire.backend.repositories.Repository;
+import org.uberfire.backend.server.util.Paths;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.workbench.events.ResourceBatchChangesEvent;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ProjectServiceImplNewProjectsTest {
+
+    private final SimpleFileSystemProvider fs = new SimpleFileSystemProvider();
+    private BeanManager beanManager;
+    private Paths paths;
+    private ProjectService projectService;
+    private NewProjectsObserver observer;
+    private Repository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        //Bootstrap WELD container
+        StartMain startMain = new StartMain( new String[ 0 ] );
+        beanManager = startMain.go().getBeanManager();
+
+        paths = getReference( Paths.class );
+        projectService = getReference( ProjectService.class );
+        observer = getReference( NewProjectsObserver.class );
+
+        //Ensure URLs use the default:// scheme
+        fs.forceAsDefault();
+
+        //Create projects in an empty folder
+        final File root = File.createTempFile( "new-projects",
+                                               "" );
+        assertTrue( root.delete() );
+        assertTrue( root.mkdir() );
+        root.deleteOnExit();
+        //Directories' URIs end with a separator, unlike those of the Paths within which Projects are created
+        final String uri = root.toURI().toString();
+        final Path rootPath = paths.convert( fs.getPath( URI.create( uri.substring( 0,
+                                                                                    uri.length() - 1 ) ) ) );
+        repository = mock( Repository.class );
+        when( repository.getRoot() ).thenReturn( rootPath );
+    }
+
+    @Test
+    public void testNewProjectsWithSingleProject() throws Exception {
+        final Map<String, POM> poms = new LinkedHashMap<String, POM>();
+        poms.put( "project1",
+                  new POM( new GAV( "org.test",
+                                    "project1",
+                                    "1.0" ) ) );
+
+        final List<Project> projects = projectService.newProjects( repository,
+                                                                   poms,
+                                                                   "/" );
+
+        assertEquals( 1,
+                      projects.size() );
+        assertProject( projects.get( 0 ),
+                       "project1" );
+        assertEquals( asList( "project1",
+                              "org.test.project1",
+                              "batch" ),
+                      observer.events );
+    }
+
+    @Test
+    public void testNewProjectsWithMultipleProjects() throws Exception {
+        final Map<String, POM> poms = new LinkedHashMap<String, POM>();
+        poms.put( "project1",
+                  new POM( new GAV( "org.test",
+                                    "project1",
+                                    "1.0" ) ) );
+        poms.put( "project2",
+                  new POM( new GAV( "org.test",
+                                    "project2",
+                                    "1.0" ) ) );
+
+        final List<Project> projects = projectService.newProjects( repository,
+                                                                   poms,
+                                                                   "/" );
+
+        assertEquals( 2,
+                      projects.size() );
+        assertProject( projects.get( 0 ),
+                       "project1" );
+        assertProject( projects.get( 1 ),
+                       "project2" );
+
+        //Each Project and its default workspace are raised in order, followed by a single batch for all Projects
+        assertEquals( asList( "project1",
+                              "org.test.project1",
+                              "project2",
+                              "org.test.project2",
+                              "batch" ),
+                      observer.events );
+        assertEquals( 6,
+                      observer.batchChangeCount );
+    }
+
+    @Test
+    public void testNewProjectRaisesNoBatchEvent() throws Exception {
+        final Project project = projectService.newProject( repository,
+                                                           "project1",
+                                                           new POM( new GAV( "org.test",
+                                                                             "project1",
+                                                                             "1.0" ) ),
+                                                           "/" );
+
+        assertProject( project,
+                       "project1" );
+        assertEquals( asList( "project1",
+                              "org.test.project1" ),
+                      observer.events );
+    }
+
+    private void assertProject( final Project project,
+                                final String projectName ) {
+        assertNotNull( project );
+        assertEquals( projectName,
+                      project.getRootPath().getFileName() );
+        assertNotNull( projectService.resolveProject( project.getPomXMLPath() ) );
+    }
+
+    private static List<String> asList( final String... events ) {
+        final List<String> list = new ArrayList<String>();
+        for ( String event : events ) {
+            list.add( event );
+        }
+        return list;
+    }
+
+    private <T> T getReference( final Class<T> type ) {
+        final Bean bean = (Bean) beanManager.getBeans( type ).iterator().next();
+        final CreationalContext cc = beanManager.createCreationalContext( bean );
+        return type.cast( beanManager.getReference( bean,
+                                                    type,
+                                                    cc ) );
+    }
+
+    @Singleton
+    public static class NewProjectsObserver {
+
+        final List<String> events = new ArrayList<String>();
+        int batchChangeCount;
+
+        public void onNewProject( final @Observes NewProjectEvent event ) {
+            events.add( event.getProject().getRootPath().getFileName() );
+        }
+
+        public void onNewPackage( final @Observes NewPackageEvent event ) {
+            events.add( event.getPackage().getPackageName() );
+        }
+
+        public void onBatchChanges( final @Observes ResourceBatchChangesEvent event ) {
+            events.add( "batch" );
+            batchChangeCount += event.getBatch().size();
+        }
+
+    }
+
+}
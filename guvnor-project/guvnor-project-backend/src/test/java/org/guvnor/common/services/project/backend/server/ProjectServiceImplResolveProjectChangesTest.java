@@ -0,0 +1,162 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.project.backend.server;
+
+import java.io.File;
+import java.net.URI;
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+
+import org.guvnor.common.services.project.model.Project;
+import org.guvnor.common.services.project.service.ProjectService;
+import org.jboss.weld.environment.se.StartMain;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.commons.java.nio.fs.file.SimpleFileSystemProvider;
+import org.uberfire.backend.server.util.Paths;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.rpc.SessionInfo;
+import org.uberfire.workbench.events.ResourceAddedEvent;
+import org.uberfire.workbench.events.ResourceDeletedEvent;
+import org.uberfire.workbench.events.ResourceRenamedEvent;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Projects are resolved from what is known about Paths, which must be forgotten when they change
+ */
+public class ProjectServiceImplResolveProjectChangesTest {
+
+    private final SimpleFileSystemProvider fs = new SimpleFileSystemProvider();
+    private BeanManager beanManager;
+    private Paths paths;
+    private ProjectService projectService;
+    private File root;
+
+    @Before
+    public void setUp() throws Exception {
+        //Bootstrap WELD container
+        StartMain startMain = new StartMain( new String[ 0 ] );
+        beanManager = startMain.go().getBeanManager();
+
+        paths = getReference( Paths.class );
+        projectService = getReference( ProjectService.class );
+
+        //Ensure URLs use the default:// scheme
+        fs.forceAsDefault();
+
+        root = File.createTempFile( "resolve-project",
+                                    "" );
+        assertTrue( root.delete() );
+        assertTrue( root.mkdir() );
+        root.deleteOnExit();
+    }
+
+    @Test
+    public void testResolveProjectAfterAdd() throws Exception {
+        final File projectRoot = makeProject( "project1" );
+        final File pom = new File( projectRoot,
+                                   "pom.xml" );
+        assertTrue( pom.delete() );
+        final Path rule = toPath( new File( projectRoot,
+                                            "src/main/resources/rule.drl" ) );
+        assertNull( projectService.resolveProject( rule ) );
+
+        assertTrue( pom.createNewFile() );
+        beanManager.fireEvent( new ResourceAddedEvent( toPath( pom ) ) );
+
+        final Project project = projectService.resolveProject( rule );
+        assertNotNull( project );
+        assertEquals( toPath( projectRoot ).toURI(),
+                      project.getRootPath().toURI() );
+    }
+
+    @Test
+    public void testResolveProjectAfterDelete() throws Exception {
+        final File projectRoot = makeProject( "project1" );
+        final Path rule = toPath( new File( projectRoot,
+                                            "src/main/resources/rule.drl" ) );
+        assertNotNull( projectService.resolveProject( rule ) );
+
+        final File pom = new File( projectRoot,
+                                   "pom.xml" );
+        assertTrue( pom.delete() );
+        beanManager.fireEvent( new ResourceDeletedEvent( toPath( pom ),
+                                                         mock( SessionInfo.class ) ) );
+
+        assertNull( projectService.resolveProject( rule ) );
+    }
+
+    @Test
+    public void testResolveProjectAfterRename() throws Exception {
+        final File sourceRoot = makeProject( "project1" );
+        final Path sourceRule = toPath( new File( sourceRoot,
+                                                  "src/main/resources/rule.drl" ) );
+        assertEquals( "project1",
+                      projectService.resolveProject( sourceRule ).getProjectName() );
+
+        final File destinationRoot = new File( root,
+                                               "project2" );
+        final Path destinationRule = toPath( new File( destinationRoot,
+                                                       "src/main/resources/rule.drl" ) );
+        assertNull( projectService.resolveProject( destinationRule ) );
+
+        final Path sourcePath = toPath( sourceRoot );
+        assertTrue( sourceRoot.renameTo( destinationRoot ) );
+        beanManager.fireEvent( new ResourceRenamedEvent( sourcePath,
+                                                         toPath( destinationRoot ),
+                                                         mock( SessionInfo.class ) ) );
+
+        assertNull( projectService.resolveProject( sourceRule ) );
+        assertEquals( "project2",
+                      projectService.resolveProject( destinationRule ).getProjectName() );
+    }
+
+    private File makeProject( final String projectName ) throws Exception {
+        final File projectRoot = new File( root,
+                                           projectName );
+        final File resources = new File( projectRoot,
+                                         "src/main/resources" );
+        assertTrue( new File( resources,
+                              "META-INF" ).mkdirs() );
+        assertTrue( new File( projectRoot,
+                              "pom.xml" ).createNewFile() );
+        assertTrue( new File( resources,
+                              "META-INF/kmodule.xml" ).createNewFile() );
+        assertTrue( new File( resources,
+                              "rule.drl" ).createNewFile() );
+        return projectRoot;
+    }
+
+    private Path toPath( final File file ) {
+        //Directories' URIs end with a separator, unlike those of the Paths of a Project's root
+        final String uri = file.toURI().toString();
+        return paths.convert( fs.getPath( URI.create( uri.endsWith( "/" ) ? uri.substring( 0,
+                                                                                          uri.length() - 1 ) : uri ) ) );
+    }
+
+    private <T> T getReference( final Class<T> type ) {
+        final Bean bean = (Bean) beanManager.getBeans( type ).iterator().next();
+        final CreationalContext cc = beanManager.createCreationalContext( bean );
+        return type.cast( beanManager.getReference( bean,
+                                                    type,
+                                                    cc ) );
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.enterprise.inject.Alternative;
+import javax.enterprise.inject.Default;
+import javax.enterprise.inject.Produces;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.servlet.ServletContext;
+
+import org.kie.commons.io.IOService;
+import org.kie.commons.io.impl.IOServiceDotFileImpl;
+import org.uberfire.backend.repositories.Repository;
+import org.uberfire.rpc.SessionInfo;
+import org.uberfire.rpc.impl.SessionInfoImpl;
+import org.uberfire.security.Identity;
+import org.uberfire.security.Role;
+
+import static org.uberfire.backend.server.repositories.SystemRepository.*;
+
+/**
+ * Producers for the collaborators of the Builder that are otherwise provided by the workbench
+ */
+@Singleton
+@Alternative
+public class BenchmarkAppSetup {
+
+    private final IOService ioService = new IOServiceDotFileImpl();
+
+    private final Identity identity = new Identity() {
+
+        @Override
+        public String getName() {
+            return "benchmark";
+        }
+
+        @Override
+        public List<Role> getRoles() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean hasRole( Role role ) {
+            return true;
+        }
+
+        @Override
+        public Map<String, String> getProperties() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void aggregateProperty( String name,
+                                       String value ) {
+        }
+
+        @Override
+        public void removeProperty( String name ) {
+        }
+
+        @Override
+        public String getProperty( String name,
+                                   String defaultValue ) {
+            return null;
+        }
+
+    };
+
+    @Produces
+    @Named("ioStrategy")
+    public IOService makeIOService() {
+        return ioService;
+    }
+
+    @Produces
+    @Named("system")
+    public Repository systemRepository() {
+        return SYSTEM_REPO;
+    }
+
+    @Produces
+    @Named("uf")
+    public ServletContext servletContext() {
+        //The ServletContext is not used whilst building, so each of its methods returns null
+        return (ServletContext) Proxy.newProxyInstance( ServletContext.class.getClassLoader(),
+                                                        new Class[]{ ServletContext.class },
+                                                        new InvocationHandler() {
+                                                            @Override
+                                                            public Object invoke( final Object proxy,
+                                                                                  final Method method,
+                                                                                  final Object[] args ) {
+                                                                return null;
+                                                            }
+                                                        } );
+    }
+
+    @Produces
+    @Default
+    public SessionInfo sessionInfo() {
+        return new SessionInfoImpl( "benchmark",
+                                    identity );
+    }
+
+    @Produces
+    public Identity getIdentity() {
+        return identity;
+    }
+
+}
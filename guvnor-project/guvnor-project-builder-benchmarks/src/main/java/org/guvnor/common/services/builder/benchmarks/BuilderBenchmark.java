@@ -0,0 +1,220 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.guvnor.common.services.builder.Builder;
+import org.guvnor.common.services.project.builder.model.BuildResults;
+import org.guvnor.common.services.project.builder.model.IncrementalBuildResults;
+import org.guvnor.common.services.project.builder.service.BuildValidationHelper;
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.common.services.project.service.ProjectService;
+import org.jboss.weld.environment.se.Weld;
+import org.jboss.weld.environment.se.WeldContainer;
+import org.kie.commons.io.IOService;
+import org.kie.commons.java.nio.file.Path;
+import org.kie.commons.java.nio.fs.file.SimpleFileSystemProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uberfire.backend.server.util.Paths;
+import org.uberfire.workbench.events.ChangeType;
+import org.uberfire.workbench.events.ResourceChange;
+
+/**
+ * Benchmarks of the stages of the Builder pipeline over generated Projects. Run with:
+ * java -jar target/benchmarks.jar BuilderBenchmark -p resourceCount=100,1000
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BuilderBenchmark {
+
+    /**
+     * The generated Project and the collaborators of Builders
+     */
+    @State(Scope.Benchmark)
+    public static class ProjectState {
+
+        @Param({"100", "1000"})
+        public int resourceCount;
+
+        private Weld weld;
+        private Paths paths;
+        private IOService ioService;
+        private ProjectService projectService;
+        private SyntheticProject project;
+        private Path moduleDirectory;
+        private ExecutorService executor;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            weld = new Weld();
+            final WeldContainer container = weld.initialize();
+            paths = container.instance().select( Paths.class ).get();
+            ioService = container.instance().select( IOService.class ).get();
+            projectService = container.instance().select( ProjectService.class ).get();
+            project = SyntheticProject.generate( resourceCount );
+            moduleDirectory = toPath( project.getRoot() );
+
+            //Builders use as many threads as LRUBuilderCache gives them by default
+            final int parallelism = Runtime.getRuntime().availableProcessors();
+            if ( parallelism > 1 ) {
+                executor = Executors.newFixedThreadPool( parallelism );
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if ( executor != null ) {
+                executor.shutdownNow();
+            }
+            project.delete();
+            weld.shutdown();
+        }
+
+        Builder newBuilder() {
+            return new Builder( moduleDirectory,
+                                new GAV(),
+                                paths,
+                                ioService,
+                                projectService,
+                                new ArrayList<BuildValidationHelper>(),
+                                executor );
+        }
+
+        Path toPath( final File file ) {
+            return new SimpleFileSystemProvider().getPath( file.toURI() );
+        }
+    }
+
+    /**
+     * A Builder that has not been built
+     */
+    @State(Scope.Thread)
+    public static class NewBuilderState {
+
+        private Builder builder;
+
+        @Setup(Level.Invocation)
+        public void setup( final ProjectState projectState ) {
+            builder = projectState.newBuilder();
+        }
+    }
+
+    /**
+     * A Builder that has been built, with one resource changed before each invocation
+     */
+    @State(Scope.Thread)
+    public static class BuiltBuilderState {
+
+        private Builder builder;
+        private int revision;
+        private Path changedResource;
+
+        @Setup(Level.Trial)
+        public void setup( final ProjectState projectState ) {
+            builder = projectState.newBuilder();
+            builder.build();
+        }
+
+        @Setup(Level.Invocation)
+        public void change( final ProjectState projectState ) throws Exception {
+            revision++;
+            final File drlFile = projectState.project.getDrlFiles().get( 0 );
+            projectState.project.update( drlFile,
+                                         revision );
+            changedResource = projectState.toPath( drlFile );
+        }
+    }
+
+    /**
+     * A Builder that has been built, with a batch of resources changed before each invocation
+     */
+    @State(Scope.Thread)
+    public static class BatchState {
+
+        @Param({"1", "10", "100"})
+        public int batchSize;
+
+        private Builder builder;
+        private int revision;
+        private Set<ResourceChange> changes;
+
+        @Setup(Level.Trial)
+        public void setup( final ProjectState projectState ) {
+            builder = projectState.newBuilder();
+            builder.build();
+        }
+
+        @Setup(Level.Invocation)
+        public void change( final ProjectState projectState ) throws Exception {
+            revision++;
+            changes = new HashSet<ResourceChange>();
+            final List<File> drlFiles = projectState.project.getDrlFiles();
+            for ( int i = 0; i < Math.min( batchSize,
+                                           drlFiles.size() ); i++ ) {
+                final File drlFile = drlFiles.get( i );
+                projectState.project.update( drlFile,
+                                             revision );
+                changes.add( new ResourceChange( ChangeType.UPDATE,
+                                                 projectState.paths.convert( projectState.toPath( drlFile ) ),
+                                                 null ) );
+            }
+        }
+    }
+
+    @Benchmark
+    public Builder construct( final ProjectState projectState ) {
+        return projectState.newBuilder();
+    }
+
+    @Benchmark
+    public BuildResults fullBuild( final NewBuilderState state ) {
+        return state.builder.build();
+    }
+
+    @Benchmark
+    public IncrementalBuildResults addResource( final BuiltBuilderState state ) {
+        return state.builder.addResource( state.changedResource );
+    }
+
+    @Benchmark
+    public IncrementalBuildResults applyBatchResourceChanges( final BatchState state ) {
+        return state.builder.applyBatchResourceChanges( state.changes );
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.DomDriver;
+import org.guvnor.common.services.project.backend.server.KModuleContentHandler;
+import org.guvnor.common.services.project.backend.server.converters.ClockTypeConverter;
+import org.guvnor.common.services.project.backend.server.converters.KBaseConverter;
+import org.guvnor.common.services.project.backend.server.converters.KModuleConverter;
+import org.guvnor.common.services.project.backend.server.converters.KSessionConverter;
+import org.guvnor.common.services.project.backend.server.converters.ListenerConverter;
+import org.guvnor.common.services.project.backend.server.converters.QualifierConverter;
+import org.guvnor.common.services.project.backend.server.converters.WorkItemHandlerConverter;
+import org.guvnor.common.services.project.model.ClockTypeOption;
+import org.guvnor.common.services.project.model.KBaseModel;
+import org.guvnor.common.services.project.model.KModuleModel;
+import org.guvnor.common.services.project.model.KSessionModel;
+import org.guvnor.common.services.project.model.ListenerModel;
+import org.guvnor.common.services.project.model.QualifierModel;
+import org.guvnor.common.services.project.model.WorkItemHandlerModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of marshalling kmodule.xml with an XStream configured for each call, as KModuleContentHandler
+ * previously did, against KModuleContentHandler's shared XStream. Run with:
+ * java -jar target/benchmarks.jar ContentHandlerBenchmark -t 4
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(4)
+public class ContentHandlerBenchmark {
+
+    /**
+     * A kmodule.xml, and the KModuleModel it describes
+     */
+    @State(Scope.Benchmark)
+    public static class KModuleState {
+
+        private final KModuleContentHandler handler = new KModuleContentHandler();
+        private String xml;
+        private KModuleModel model;
+
+        @Setup
+        public void setup() {
+            model = new KModuleModel();
+            for ( int i = 0; i < 5; i++ ) {
+                final KBaseModel kbase = new KBaseModel();
+                kbase.setName( "kbase" + i );
+                kbase.getPackages().add( "org.test.package" + i );
+                for ( int j = 0; j < 2; j++ ) {
+                    final KSessionModel ksession = new KSessionModel();
+                    ksession.setName( "ksession" + i + "_" + j );
+                    ksession.setType( "stateful" );
+                    kbase.getKSessions().add( ksession );
+                }
+                model.add( kbase );
+            }
+            xml = handler.toString( model );
+        }
+    }
+
+    @Benchmark
+    public KModuleModel toModelPerCallXStream( final KModuleState state ) {
+        return (KModuleModel) createXStream().fromXML( state.xml );
+    }
+
+    @Benchmark
+    public KModuleModel toModelSharedXStream( final KModuleState state ) {
+        return state.handler.toModel( state.xml );
+    }
+
+    @Benchmark
+    public String toStringPerCallXStream( final KModuleState state ) {
+        return createXStream().toXML( state.model );
+    }
+
+    @Benchmark
+    public String toStringSharedXStream( final KModuleState state ) {
+        return state.handler.toString( state.model );
+    }
+
+    //The configuration KModuleContentHandler built on every call before it shared a single XStream
+    private static XStream createXStream() {
+        final XStream xStream = new XStream( new DomDriver() );
+
+        xStream.registerConverter( new KModuleConverter() );
+        xStream.registerConverter( new KBaseConverter() );
+        xStream.registerConverter( new KSessionConverter() );
+        xStream.registerConverter( new ClockTypeConverter() );
+        xStream.registerConverter( new ListenerConverter() );
+        xStream.registerConverter( new QualifierConverter() );
+        xStream.registerConverter( new WorkItemHandlerConverter() );
+
+        xStream.alias( "kmodule", KModuleModel.class );
+        xStream.alias( "kbase", KBaseModel.class );
+        xStream.alias( "ksession", KSessionModel.class );
+        xStream.alias( "clockType", ClockTypeOption.class );
+        xStream.alias( "listener", ListenerModel.class );
+        xStream.alias( "qualifier", QualifierModel.class );
+        xStream.alias( "workItemHandler", WorkItemHandlerModel.class );
+
+        return xStream;
+    }
+
+}
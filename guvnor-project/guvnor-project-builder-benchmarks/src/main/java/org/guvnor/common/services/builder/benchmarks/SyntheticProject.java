@@ -0,0 +1,199 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Project generated on the local file system for benchmarking. Resources are grouped into packages each
+ * containing a Java fact type, DRL files with rules over the fact type and a (CSV) decision table.
+ */
+public class SyntheticProject {
+
+    private static final String PACKAGE_PREFIX = "org.guvnor.benchmark.pkg";
+
+    //Resources per package: one Java class, one decision table and the remainder DRL files
+    private static final int RESOURCES_PER_PACKAGE = 10;
+    private static final int RULES_PER_DRL = 5;
+
+    private final File root;
+    private final List<File> drlFiles = new ArrayList<File>();
+
+    private SyntheticProject( final File root ) {
+        this.root = root;
+    }
+
+    /**
+     * Generate a Project in a new temporary directory
+     * @param resourceCount Approximate number of resources. Rounded up to a whole number of packages.
+     * @return
+     * @throws IOException
+     */
+    public static SyntheticProject generate( final int resourceCount ) throws IOException {
+        final File root = File.createTempFile( "guvnor-benchmark",
+                                               "" );
+        if ( !( root.delete() && root.mkdirs() ) ) {
+            throw new IOException( "Unable to create directory " + root );
+        }
+        final SyntheticProject project = new SyntheticProject( root );
+        project.write( new File( root,
+                                 "pom.xml" ),
+                       makePom() );
+        project.write( new File( root,
+                                 "src/main/resources/META-INF/kmodule.xml" ),
+                       "<kmodule xmlns=\"http://jboss.org/kie/6.0.0/kmodule\"/>" );
+
+        final int packageCount = Math.max( 1,
+                                           ( resourceCount + RESOURCES_PER_PACKAGE - 1 ) / RESOURCES_PER_PACKAGE );
+        for ( int p = 0; p < packageCount; p++ ) {
+            project.generatePackage( p );
+        }
+        return project;
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    public List<File> getDrlFiles() {
+        return drlFiles;
+    }
+
+    /**
+     * Re-write a DRL file with content that differs for each revision
+     * @param drlFile
+     * @param revision
+     * @throws IOException
+     */
+    public void update( final File drlFile,
+                        final int revision ) throws IOException {
+        final int index = drlFiles.indexOf( drlFile );
+        write( drlFile,
+               makeDrl( getPackage( drlFile ),
+                        index,
+                        revision ) );
+    }
+
+    public void delete() {
+        delete( root );
+    }
+
+    private void generatePackage( final int p ) throws IOException {
+        final String packageName = PACKAGE_PREFIX + p;
+        final String packagePath = packageName.replace( '.',
+                                                        '/' );
+        write( new File( root,
+                         "src/main/java/" + packagePath + "/Fact.java" ),
+               makeFact( packageName ) );
+        write( new File( root,
+                         "src/main/resources/" + packagePath + "/table.csv" ),
+               makeDecisionTable( packageName ) );
+        for ( int i = 0; i < RESOURCES_PER_PACKAGE - 2; i++ ) {
+            final File drlFile = new File( root,
+                                           "src/main/resources/" + packagePath + "/rules" + i + ".drl" );
+            drlFiles.add( drlFile );
+            write( drlFile,
+                   makeDrl( packageName,
+                            drlFiles.size() - 1,
+                            0 ) );
+        }
+    }
+
+    private String getPackage( final File drlFile ) {
+        return PACKAGE_PREFIX + drlFile.getParentFile().getName().substring( "pkg".length() );
+    }
+
+    private static String makePom() {
+        return "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+                + "  <modelVersion>4.0.0</modelVersion>\n"
+                + "  <groupId>org.guvnor.benchmark</groupId>\n"
+                + "  <artifactId>synthetic-project</artifactId>\n"
+                + "  <version>1.0</version>\n"
+                + "</project>\n";
+    }
+
+    private static String makeFact( final String packageName ) {
+        return "package " + packageName + ";\n\n"
+                + "public class Fact {\n"
+                + "    private int value;\n"
+                + "    private int category;\n"
+                + "    public int getValue() { return value; }\n"
+                + "    public void setValue( int value ) { this.value = value; }\n"
+                + "    public int getCategory() { return category; }\n"
+                + "    public void setCategory( int category ) { this.category = category; }\n"
+                + "}\n";
+    }
+
+    private static String makeDrl( final String packageName,
+                                   final int index,
+                                   final int revision ) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( "package " ).append( packageName ).append( ";\n\n" );
+        sb.append( "import " ).append( packageName ).append( ".Fact;\n\n" );
+        for ( int r = 0; r < RULES_PER_DRL; r++ ) {
+            sb.append( "rule \"Rule " ).append( index ).append( "-" ).append( r ).append( "\"\n" );
+            sb.append( "when\n" );
+            sb.append( "  f : Fact( value > " ).append( r * 10 + revision ).append( ", category == 0 )\n" );
+            sb.append( "then\n" );
+            sb.append( "  modify( f ) { setCategory( " ).append( r + 1 ).append( " ) }\n" );
+            sb.append( "end\n\n" );
+        }
+        return sb.toString();
+    }
+
+    private static String makeDecisionTable( final String packageName ) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( "RuleSet," ).append( packageName ).append( "\n" );
+        sb.append( "Import," ).append( packageName ).append( ".Fact\n" );
+        sb.append( "\n" );
+        sb.append( "RuleTable Categories,\n" );
+        sb.append( "CONDITION,ACTION\n" );
+        sb.append( "f : Fact,\n" );
+        sb.append( "value > ,f.setCategory(  );\n" );
+        sb.append( "Minimum value,Category\n" );
+        for ( int r = 0; r < RULES_PER_DRL; r++ ) {
+            sb.append( r * 100 ).append( "," ).append( r + 10 ).append( "\n" );
+        }
+        return sb.toString();
+    }
+
+    private void write( final File file,
+                        final String content ) throws IOException {
+        file.getParentFile().mkdirs();
+        final OutputStream os = new FileOutputStream( file );
+        try {
+            os.write( content.getBytes( "UTF-8" ) );
+        } finally {
+            os.close();
+        }
+    }
+
+    private static void delete( final File file ) {
+        final File[] children = file.listFiles();
+        if ( children != null ) {
+            for ( File child : children ) {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+
+}
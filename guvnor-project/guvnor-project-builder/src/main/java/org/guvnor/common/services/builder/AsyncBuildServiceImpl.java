@@ -0,0 +1,233 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
+
+import org.guvnor.common.services.backend.exceptions.ExceptionUtilities;
+import org.guvnor.common.services.project.builder.events.BuildProgressEvent;
+import org.guvnor.common.services.project.builder.model.BuildMetrics;
+import org.guvnor.common.services.project.builder.model.BuildPhase;
+import org.guvnor.common.services.project.builder.model.BuildResults;
+import org.guvnor.common.services.project.builder.model.BuildTicket;
+import org.guvnor.common.services.project.builder.service.AsyncBuildService;
+import org.guvnor.common.services.project.model.Project;
+import org.jboss.errai.bus.server.annotations.Service;
+import org.kie.commons.validation.PortablePreconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs builds on the build executor so callers are not blocked for the duration of the build. The progress of
+ * the most recent builds is retained so that clients can poll for it.
+ */
+@Service
+@ApplicationScoped
+public class AsyncBuildServiceImpl
+        implements AsyncBuildService {
+
+    //Number of builds for which progress is retained
+    private static final int MAX_RETAINED_TICKETS = 1000;
+
+    private static final Logger log = LoggerFactory.getLogger( AsyncBuildServiceImpl.class );
+
+    @Inject
+    private BuildServiceImpl buildService;
+
+    @Inject
+    private LRUBuilderCache cache;
+
+    @Inject
+    private BuildMetricsCollector metrics;
+
+    @Inject
+    private Event<BuildProgressEvent> buildProgressEvent;
+
+    @Inject
+    private Event<BuildResults> buildResultsEvent;
+
+    @Inject
+    private BuildExecutorServiceFactory executorServiceProducer;
+    private ExecutorService executor;
+
+    private final Map<BuildTicket, BuildProgressEvent> progress = new LinkedHashMap<BuildTicket, BuildProgressEvent>() {
+        @Override
+        protected boolean removeEldestEntry( final Map.Entry<BuildTicket, BuildProgressEvent> eldest ) {
+            return size() > MAX_RETAINED_TICKETS;
+        }
+    };
+
+    @PostConstruct
+    public void setup() {
+        executor = executorServiceProducer.getExecutorService();
+    }
+
+    @Override
+    public BuildTicket build( final Project project ) {
+        return submit( project,
+                       false );
+    }
+
+    @Override
+    public BuildTicket buildAndDeploy( final Project project ) {
+        return submit( project,
+                       true );
+    }
+
+    @Override
+    public BuildProgressEvent getProgress( final BuildTicket ticket ) {
+        PortablePreconditions.checkNotNull( "ticket",
+                                            ticket );
+        synchronized ( progress ) {
+            return progress.get( ticket );
+        }
+    }
+
+    @Override
+    public BuildResults getResults( final BuildTicket ticket ) {
+        final BuildProgressEvent event = getProgress( ticket );
+        return ( event == null ? null : event.getResults() );
+    }
+
+    private BuildTicket submit( final Project project,
+                                final boolean deploy ) {
+        PortablePreconditions.checkNotNull( "project",
+                                            project );
+        final BuildTicket ticket = new BuildTicket( UUID.randomUUID().toString(),
+                                                    project,
+                                                    deploy );
+        setProgress( ticket,
+                     BuildPhase.QUEUED,
+                     0,
+                     null,
+                     null );
+        final long submitTime = System.nanoTime();
+        try {
+            executor.execute( new PrioritizedBuildTask() {
+                @Override
+                public BuildPriority getPriority() {
+                    return ( deploy ? BuildPriority.DEPLOY : BuildPriority.FULL_BUILD );
+                }
+
+                @Override
+                public void run() {
+                    metrics.recordTime( BuildMetrics.TIMER_QUEUE_WAIT,
+                                        System.nanoTime() - submitTime );
+                    doBuild( ticket );
+                }
+            } );
+
+        } catch ( RejectedExecutionException ree ) {
+            setProgress( ticket,
+                         BuildPhase.FAILED,
+                         0,
+                         null,
+                         "Build rejected." );
+            throw ExceptionUtilities.handleException( ree );
+        }
+        return ticket;
+    }
+
+    private void doBuild( final BuildTicket ticket ) {
+        final Project project = ticket.getProject();
+        int resourceCount = 0;
+        try {
+            //Creating the Builder, if it is not cached, reads the Project's resources
+            setProgress( ticket,
+                         BuildPhase.INGESTING,
+                         resourceCount,
+                         null,
+                         null );
+            final Lock lock = cache.getBuildLock( project );
+            lock.lock();
+            try {
+                resourceCount = cache.assertBuilder( project ).getResourceCount();
+            } finally {
+                lock.unlock();
+            }
+
+            setProgress( ticket,
+                         BuildPhase.BUILDING,
+                         resourceCount,
+                         null,
+                         null );
+            final BuildResults results;
+            if ( ticket.isDeploy() ) {
+                final int builtResourceCount = resourceCount;
+                results = buildService.buildAndDeploy( project,
+                                                       new Runnable() {
+                                                           @Override
+                                                           public void run() {
+                                                               setProgress( ticket,
+                                                                            BuildPhase.DEPLOYING,
+                                                                            builtResourceCount,
+                                                                            null,
+                                                                            null );
+                                                           }
+                                                       } );
+            } else {
+                results = buildService.build( project );
+            }
+
+            setProgress( ticket,
+                         BuildPhase.COMPLETED,
+                         resourceCount,
+                         results,
+                         null );
+            buildResultsEvent.fire( results );
+
+        } catch ( Exception e ) {
+            log.error( "Build of " + project.getRootPath().toURI() + " failed.",
+                       e );
+            setProgress( ticket,
+                         BuildPhase.FAILED,
+                         resourceCount,
+                         null,
+                         e.getMessage() );
+        }
+    }
+
+    private void setProgress( final BuildTicket ticket,
+                              final BuildPhase phase,
+                              final int resourceCount,
+                              final BuildResults results,
+                              final String message ) {
+        final BuildProgressEvent event = new BuildProgressEvent( ticket,
+                                                                 phase,
+                                                                 resourceCount,
+                                                                 results,
+                                                                 message );
+        synchronized ( progress ) {
+            progress.put( ticket,
+                          event );
+        }
+        try {
+            buildProgressEvent.fire( event );
+        } catch ( Exception e ) {
+            log.warn( "Unable to report progress of build " + ticket.getId() + ": " + e.getMessage() );
+        }
+    }
+
+}
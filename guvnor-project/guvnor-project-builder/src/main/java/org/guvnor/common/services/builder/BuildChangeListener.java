@@ -15,12 +15,14 @@
  */
 package org.guvnor.common.services.builder;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
@@ -28,6 +30,7 @@ import javax.enterprise.event.Event;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 
+import org.guvnor.common.services.project.builder.events.InvalidateDMOProjectCacheEvent;
 import org.guvnor.common.services.project.builder.model.BuildResults;
 import org.guvnor.common.services.project.builder.model.IncrementalBuildResults;
 import org.guvnor.common.services.project.builder.service.BuildService;
@@ -40,6 +43,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.uberfire.backend.server.util.Paths;
 import org.uberfire.backend.vfs.Path;
+import org.uberfire.workbench.events.ChangeType;
 import org.uberfire.workbench.events.ResourceAddedEvent;
 import org.uberfire.workbench.events.ResourceBatchChangesEvent;
 import org.uberfire.workbench.events.ResourceChange;
@@ -54,6 +58,8 @@ public class BuildChangeListener {
 
     private static final String INCREMENTAL_BUILD_PROPERTY_NAME = "build.enable-incremental";
 
+    private static final String INCREMENTAL_BUILD_DEBOUNCE_PROPERTY_NAME = "build.incremental-debounce";
+
     private static final Logger log = LoggerFactory.getLogger( BuildChangeListener.class );
 
     @Inject
@@ -74,16 +80,38 @@ public class BuildChangeListener {
     @Inject
     private Event<IncrementalBuildResults> incrementalBuildResultsEvent;
 
+    @Inject
+    private BuildMetricsCollector metrics;
+
+    @Inject
+    private ProjectDependencyGraph dependencyGraph;
+
+    @Inject
+    private LRUBuilderCache cache;
+
+    @Inject
+    private Event<InvalidateDMOProjectCacheEvent> invalidateDMOProjectCacheEvent;
+
     @Inject
     private BuildExecutorServiceFactory executorServiceProducer;
     private ExecutorService executor;
 
+    private ProjectBuildScheduler scheduler;
+
     private boolean isIncrementalEnabled = false;
 
     @PostConstruct
     private void setup() {
         executor = executorServiceProducer.getExecutorService();
         isIncrementalEnabled = isIncrementalBuildEnabled();
+        scheduler = new ProjectBuildScheduler( buildService,
+                                               cache,
+                                               buildResultsEvent,
+                                               incrementalBuildResultsEvent,
+                                               executor,
+                                               metrics,
+                                               dependencyGraph,
+                                               getIncrementalBuildDebounceWindow() );
     }
 
     private boolean isIncrementalBuildEnabled() {
@@ -91,8 +119,17 @@ public class BuildChangeListener {
         return Boolean.parseBoolean( value );
     }
 
+    //Milliseconds changes to a Project are collected before an incremental build is started. Defaults to zero.
+    private long getIncrementalBuildDebounceWindow() {
+        return BuildPreferences.getLong( appConfigService,
+                                         INCREMENTAL_BUILD_DEBOUNCE_PROPERTY_NAME,
+                                         0,
+                                         0 );
+    }
+
     @PreDestroy
     private void destroyExecutorService() {
+        scheduler.shutdown();
         try {
             executor.shutdown();
             if ( !executor.awaitTermination( 10,
@@ -128,29 +165,11 @@ public class BuildChangeListener {
         }
 
         //Schedule an incremental build
-        executor.execute( new Runnable() {
-
-            @Override
-            public void run() {
-                try {
-                    log.info( "Incremental build request being processed: " + resource.toURI() + " (added)." );
-                    final Project project = projectService.resolveProject( resource );
-
-                    //Fall back to a Full Build in lieu of an Incremental Build if the Project has not been previously built
-                    if ( buildService.isBuilt( project ) ) {
-                        final IncrementalBuildResults results = buildService.addPackageResource( resource );
-                        incrementalBuildResultsEvent.fire( results );
-                    } else {
-                        final BuildResults results = buildService.build( project );
-                        buildResultsEvent.fire( results );
-                    }
-
-                } catch ( Exception e ) {
-                    log.error( e.getMessage(),
-                               e );
-                }
-            }
-        } );
+        final Project project = projectService.resolveProject( resource );
+        scheduler.scheduleIncrementalBuild( project,
+                                            Collections.singleton( new ResourceChange( ChangeType.ADD,
+                                                                                       resource,
+                                                                                       resourceAddedEvent.getSessionInfo() ) ) );
     }
 
     public void deleteResource( @Observes final ResourceDeletedEvent resourceDeletedEvent ) {
@@ -172,29 +191,11 @@ public class BuildChangeListener {
         }
 
         //Schedule an incremental build
-        executor.execute( new Runnable() {
-
-            @Override
-            public void run() {
-                try {
-                    log.info( "Incremental build request being processed: " + resource.toURI() + " (deleted)." );
-                    final Project project = projectService.resolveProject( resource );
-
-                    //Fall back to a Full Build in lieu of an Incremental Build if the Project has not been previously built
-                    if ( buildService.isBuilt( project ) ) {
-                        final IncrementalBuildResults results = buildService.deletePackageResource( resource );
-                        incrementalBuildResultsEvent.fire( results );
-                    } else {
-                        final BuildResults results = buildService.build( project );
-                        buildResultsEvent.fire( results );
-                    }
-
-                } catch ( Exception e ) {
-                    log.error( e.getMessage(),
-                               e );
-                }
-            }
-        } );
+        final Project project = projectService.resolveProject( resource );
+        scheduler.scheduleIncrementalBuild( project,
+                                            Collections.singleton( new ResourceChange( ChangeType.DELETE,
+                                                                                       resource,
+                                                                                       resourceDeletedEvent.getSessionInfo() ) ) );
     }
 
     public void updateResource( @Observes final ResourceUpdatedEvent resourceUpdatedEvent ) {
@@ -219,58 +220,15 @@ public class BuildChangeListener {
         final boolean isPomFile = projectService.isPom( resource );
         final boolean isKModuleFile = projectService.isKModule( resource );
         if ( isPomFile || isKModuleFile ) {
-            scheduleProjectResourceUpdate( project );
+            scheduler.scheduleFullBuild( project );
         } else {
-            schedulePackageResourceUpdate( resource );
+            scheduler.scheduleIncrementalBuild( project,
+                                                Collections.singleton( new ResourceChange( ChangeType.UPDATE,
+                                                                                           resource,
+                                                                                           resourceUpdatedEvent.getSessionInfo() ) ) );
         }
     }
 
-    //Schedule a re-build of a Project (changes to pom.xml or kmodule.xml require a full build)
-    private void scheduleProjectResourceUpdate( final Project project ) {
-        executor.execute( new Runnable() {
-
-            @Override
-            public void run() {
-                try {
-                    log.info( "Incremental build request being processed: " + project.getRootPath() + " (updated)." );
-                    final BuildResults results = buildService.build( project );
-                    buildResultsEvent.fire( results );
-
-                } catch ( Exception e ) {
-                    log.error( e.getMessage(),
-                               e );
-                }
-            }
-        } );
-    }
-
-    //Schedule an incremental build for a package resource
-    private void schedulePackageResourceUpdate( final Path resource ) {
-        executor.execute( new Runnable() {
-
-            @Override
-            public void run() {
-                try {
-                    log.info( "Incremental build request being processed: " + resource.toURI() + " (updated)." );
-                    final Project project = projectService.resolveProject( resource );
-
-                    //Fall back to a Full Build in lieu of an Incremental Build if the Project has not been previously built
-                    if ( buildService.isBuilt( project ) ) {
-                        final IncrementalBuildResults results = buildService.updatePackageResource( resource );
-                        incrementalBuildResultsEvent.fire( results );
-                    } else {
-                        final BuildResults results = buildService.build( project );
-                        buildResultsEvent.fire( results );
-                    }
-
-                } catch ( Exception e ) {
-                    log.error( e.getMessage(),
-                               e );
-                }
-            }
-        } );
-    }
-
     public void batchResourceChanges( @Observes final ResourceBatchChangesEvent resourceBatchChangesEvent ) {
         //Do nothing if incremental builds are disabled
         if ( !isIncrementalEnabled ) {
@@ -304,33 +262,47 @@ public class BuildChangeListener {
             }
         }
 
-        //Schedule an incremental build for each Project
-        for ( final Map.Entry<Project, Set<ResourceChange>> e : projectBatchChanges.entrySet() ) {
-            executor.execute( new Runnable() {
-
-                @Override
-                public void run() {
-                    try {
-                        log.info( "Batch incremental build request being processed." );
-                        final Project project = e.getKey();
-                        final Set<ResourceChange> changes = e.getValue();
-
-                        //Fall back to a Full Build in lieu of an Incremental Build if the Project has not been previously built
-                        if ( buildService.isBuilt( project ) ) {
-                            final IncrementalBuildResults results = buildService.applyBatchResourceChanges( project,
-                                                                                                            changes );
-                            incrementalBuildResultsEvent.fire( results );
-                        } else {
-                            final BuildResults results = buildService.build( project );
-                            buildResultsEvent.fire( results );
-                        }
-
-                    } catch ( Exception e ) {
-                        log.error( e.getMessage(),
-                                   e );
-                    }
-                }
-            } );
+        //Schedule an incremental build for each Project, those depended upon first
+        for ( final Project project : dependencyGraph.sort( projectBatchChanges.keySet() ) ) {
+            scheduler.scheduleIncrementalBuild( project,
+                                                projectBatchChanges.get( project ) );
+        }
+    }
+
+    public void kieModuleChanged( @Observes final KieModuleChangedEvent kieModuleChangedEvent ) {
+        //Do nothing if incremental builds are disabled
+        if ( !isIncrementalEnabled ) {
+            return;
+        }
+
+        PortablePreconditions.checkNotNull( "kieModuleChangedEvent",
+                                            kieModuleChangedEvent );
+        final Project project = kieModuleChangedEvent.getProject();
+
+        //Rebuild Projects that depend on the changed KieModule. Their Builders are re-created so the new KieModule
+        //is resolved; Projects that have not been built are built against the new KieModule when first used.
+        final Set<Project> downstreamProjects = dependencyGraph.getDownstreamProjects( project );
+        for ( Project downstreamProject : dependencyGraph.sort( downstreamProjects ) ) {
+            if ( isBuilt( downstreamProject ) ) {
+                log.info( "Build request received for: " + downstreamProject.getRootPath().toURI() + " (dependency " + project.getRootPath().toURI() + " changed)." );
+                invalidateDMOProjectCacheEvent.fire( new InvalidateDMOProjectCacheEvent( downstreamProject.getPomXMLPath() ) );
+                scheduler.scheduleFullBuild( downstreamProject );
+            }
+        }
+    }
+
+    //Whether a Project has a cached Builder that has been built. Builders are not created to answer this.
+    private boolean isBuilt( final Project project ) {
+        final Builder builder = cache.getBuilderIfPresent( project );
+        if ( builder == null ) {
+            return false;
+        }
+        final Lock lock = cache.getBuildLock( project );
+        lock.lock();
+        try {
+            return builder.isBuilt();
+        } finally {
+            lock.unlock();
         }
     }
 
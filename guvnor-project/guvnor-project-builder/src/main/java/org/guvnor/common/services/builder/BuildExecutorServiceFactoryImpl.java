@@ -16,22 +16,66 @@
 package org.guvnor.common.services.builder;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.guvnor.common.services.project.builder.model.BuildMetrics;
+import org.guvnor.common.services.shared.config.AppConfigService;
 
 /**
- * Producer for Executor services so we can plug-in a different implementation in tests
+ * Producer for Executor services so we can plug-in a different implementation in tests. Tasks are executed in
+ * order of {@link BuildPriority}, so incremental builds are not held up by full builds and deploys. The queue is
+ * bounded; tasks submitted when it is full are rejected.
  */
 @ApplicationScoped
 public class BuildExecutorServiceFactoryImpl implements BuildExecutorServiceFactory {
 
+    private static final String QUEUE_CAPACITY_PROPERTY_NAME = "build.executor-queue-capacity";
+
+    private static final String STARVATION_THRESHOLD_PROPERTY_NAME = "build.executor-starvation-threshold";
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    //Seconds after which a queued task is executed ahead of tasks with a higher priority
+    private static final int DEFAULT_STARVATION_THRESHOLD = 30;
+
+    @Inject
+    private AppConfigService appConfigService;
+
+    @Inject
+    private BuildMetricsCollector metrics;
+
     private ExecutorService service;
 
     @PostConstruct
     public void setup() {
         final int cores = Runtime.getRuntime().availableProcessors();
-        service = Executors.newFixedThreadPool( cores );
+        final int queueCapacity = (int) BuildPreferences.getLong( appConfigService,
+                                                                  QUEUE_CAPACITY_PROPERTY_NAME,
+                                                                  DEFAULT_QUEUE_CAPACITY,
+                                                                  1 );
+        final long starvationThreshold = TimeUnit.SECONDS.toMillis( BuildPreferences.getLong( appConfigService,
+                                                                                              STARVATION_THRESHOLD_PROPERTY_NAME,
+                                                                                              DEFAULT_STARVATION_THRESHOLD ) );
+        service = new ThreadPoolExecutor( cores,
+                                          cores,
+                                          0L,
+                                          TimeUnit.MILLISECONDS,
+                                          new BuildTaskQueue( queueCapacity,
+                                                              starvationThreshold ),
+                                          new RejectedExecutionHandler() {
+                                              @Override
+                                              public void rejectedExecution( final Runnable task,
+                                                                             final ThreadPoolExecutor executor ) {
+                                                  metrics.increment( BuildMetrics.COUNTER_REJECTED_BUILDS );
+                                                  throw new RejectedExecutionException( "Build executor queue is full (" + executor.getQueue().size() + " tasks)." );
+                                              }
+                                          } );
     }
 
     @Override
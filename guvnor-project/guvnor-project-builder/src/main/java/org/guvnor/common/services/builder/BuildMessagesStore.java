@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.guvnor.common.services.project.builder.model.BuildMessage;
+import org.guvnor.common.services.project.builder.model.BuildResults;
+import org.guvnor.common.services.shared.config.AppConfigService;
+
+/**
+ * Limits the number of messages returned to clients in BuildResults. The complete list of messages of the most
+ * recent builds with more messages than the limit, set by the "build.max-messages" preference, is retained so
+ * that clients can page through it.
+ */
+@ApplicationScoped
+public class BuildMessagesStore {
+
+    private static final String MAX_MESSAGES_PROPERTY_NAME = "build.max-messages";
+
+    private static final int DEFAULT_MAX_MESSAGES = 500;
+
+    //Number of builds for which the complete list of messages is retained
+    private static final int MAX_RETAINED_RESULTS = 20;
+
+    private AppConfigService appConfigService;
+
+    private int maxMessages = DEFAULT_MAX_MESSAGES;
+
+    private final Map<String, List<BuildMessage>> retainedMessages = new LinkedHashMap<String, List<BuildMessage>>() {
+        @Override
+        protected boolean removeEldestEntry( final Map.Entry<String, List<BuildMessage>> eldest ) {
+            return size() > MAX_RETAINED_RESULTS;
+        }
+    };
+
+    public BuildMessagesStore() {
+        //Empty constructor for Weld
+    }
+
+    @Inject
+    public BuildMessagesStore( final AppConfigService appConfigService ) {
+        this.appConfigService = appConfigService;
+    }
+
+    @PostConstruct
+    public void setup() {
+        //At least one message is returned, so clients can always see why a build failed
+        maxMessages = (int) BuildPreferences.getLong( appConfigService,
+                                                      MAX_MESSAGES_PROPERTY_NAME,
+                                                      DEFAULT_MAX_MESSAGES,
+                                                      1 );
+    }
+
+    /**
+     * Truncate BuildResults with more messages than the limit, retaining the complete list of messages
+     * @param results
+     * @return The results, if within the limit, otherwise a truncated copy
+     */
+    public BuildResults truncate( final BuildResults results ) {
+        if ( results.getMessages().size() <= maxMessages ) {
+            return results;
+        }
+        final String messagesId = UUID.randomUUID().toString();
+        synchronized ( retainedMessages ) {
+            retainedMessages.put( messagesId,
+                                  new ArrayList<BuildMessage>( results.getMessages() ) );
+        }
+        return results.truncate( maxMessages,
+                                 messagesId );
+    }
+
+    /**
+     * Get a page of retained messages. Pages are no larger than the limit on the number of messages in BuildResults.
+     * @param messagesId
+     * @param startIndex
+     * @param pageSize
+     * @return The messages, or an empty list if the messages are no longer retained
+     */
+    public List<BuildMessage> getMessages( final String messagesId,
+                                           final int startIndex,
+                                           final int pageSize ) {
+        final List<BuildMessage> messages;
+        synchronized ( retainedMessages ) {
+            messages = retainedMessages.get( messagesId );
+        }
+        if ( messages == null || startIndex < 0 || startIndex >= messages.size() || pageSize <= 0 ) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<BuildMessage>( messages.subList( startIndex,
+                                                              Math.min( messages.size(),
+                                                                        startIndex + Math.min( pageSize,
+                                                                                               maxMessages ) ) ) );
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.guvnor.common.services.project.builder.model.BuildMetrics;
+import org.guvnor.common.services.project.builder.model.BuildTimerStatistics;
+import org.guvnor.common.services.project.model.Project;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Accumulates timers and counters for the build pipeline. Metrics are exposed through JMX, as
+ * "org.guvnor:type=BuildMetrics", and BuildMetricsService.
+ */
+@ApplicationScoped
+public class BuildMetricsCollector implements BuildMetricsCollectorMXBean {
+
+    private static final String OBJECT_NAME = "org.guvnor:type=BuildMetrics";
+
+    private static final Logger log = LoggerFactory.getLogger( BuildMetricsCollector.class );
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, AtomicLong> fullBuildCounts = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, AtomicLong> incrementalBuildCounts = new ConcurrentHashMap<String, AtomicLong>();
+
+    private ObjectName objectName;
+
+    @PostConstruct
+    public void registerMBean() {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName( OBJECT_NAME );
+            if ( mBeanServer.isRegistered( name ) ) {
+                log.warn( "MBean '" + OBJECT_NAME + "' is already registered. Build metrics are not available through JMX." );
+                return;
+            }
+            mBeanServer.registerMBean( this,
+                                       name );
+            objectName = name;
+
+        } catch ( Exception e ) {
+            log.warn( "Unable to register MBean '" + OBJECT_NAME + "': " + e.getMessage() );
+        }
+    }
+
+    @PreDestroy
+    public void unregisterMBean() {
+        if ( objectName == null ) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean( objectName );
+        } catch ( Exception e ) {
+            log.warn( "Unable to unregister MBean '" + OBJECT_NAME + "': " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Record the time taken by a stage of the build pipeline
+     * @param timer Name of the timer, as defined by BuildMetrics
+     * @param nanos Time taken, in nanoseconds
+     */
+    public void recordTime( final String timer,
+                            final long nanos ) {
+        Timer t = timers.get( timer );
+        if ( t == null ) {
+            final Timer newTimer = new Timer();
+            t = timers.putIfAbsent( timer,
+                                    newTimer );
+            if ( t == null ) {
+                t = newTimer;
+            }
+        }
+        t.record( nanos );
+    }
+
+    /**
+     * Increment a counter
+     * @param counter Name of the counter, as defined by BuildMetrics
+     */
+    public void increment( final String counter ) {
+        increment( counters,
+                   counter );
+    }
+
+    public void recordFullBuild( final Project project ) {
+        increment( fullBuildCounts,
+                   project.getRootPath().toURI() );
+    }
+
+    public void recordIncrementalBuild( final Project project ) {
+        increment( incrementalBuildCounts,
+                   project.getRootPath().toURI() );
+    }
+
+    public BuildMetrics getMetrics() {
+        final Map<String, BuildTimerStatistics> timerStatistics = new HashMap<String, BuildTimerStatistics>();
+        for ( Map.Entry<String, Timer> e : timers.entrySet() ) {
+            final Timer timer = e.getValue();
+            timerStatistics.put( e.getKey(),
+                                 new BuildTimerStatistics( timer.count.get(),
+                                                           toMillis( timer.totalNanos.get() ),
+                                                           toMillis( timer.maxNanos.get() ) ) );
+        }
+        return new BuildMetrics( timerStatistics,
+                                 getCounters(),
+                                 getFullBuildCounts(),
+                                 getIncrementalBuildCounts() );
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        return toMap( counters );
+    }
+
+    @Override
+    public Map<String, Long> getTimerCounts() {
+        final Map<String, Long> values = new HashMap<String, Long>();
+        for ( Map.Entry<String, Timer> e : timers.entrySet() ) {
+            values.put( e.getKey(),
+                        e.getValue().count.get() );
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getTimerTotalMillis() {
+        final Map<String, Long> values = new HashMap<String, Long>();
+        for ( Map.Entry<String, Timer> e : timers.entrySet() ) {
+            values.put( e.getKey(),
+                        toMillis( e.getValue().totalNanos.get() ) );
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getTimerMaxMillis() {
+        final Map<String, Long> values = new HashMap<String, Long>();
+        for ( Map.Entry<String, Timer> e : timers.entrySet() ) {
+            values.put( e.getKey(),
+                        toMillis( e.getValue().maxNanos.get() ) );
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getFullBuildCounts() {
+        return toMap( fullBuildCounts );
+    }
+
+    @Override
+    public Map<String, Long> getIncrementalBuildCounts() {
+        return toMap( incrementalBuildCounts );
+    }
+
+    @Override
+    public void reset() {
+        timers.clear();
+        counters.clear();
+        fullBuildCounts.clear();
+        incrementalBuildCounts.clear();
+    }
+
+    private static void increment( final ConcurrentMap<String, AtomicLong> values,
+                                   final String key ) {
+        AtomicLong value = values.get( key );
+        if ( value == null ) {
+            final AtomicLong newValue = new AtomicLong();
+            value = values.putIfAbsent( key,
+                                        newValue );
+            if ( value == null ) {
+                value = newValue;
+            }
+        }
+        value.incrementAndGet();
+    }
+
+    private static Map<String, Long> toMap( final ConcurrentMap<String, AtomicLong> values ) {
+        final Map<String, Long> map = new HashMap<String, Long>();
+        for ( Map.Entry<String, AtomicLong> e : values.entrySet() ) {
+            map.put( e.getKey(),
+                     e.getValue().get() );
+        }
+        return map;
+    }
+
+    private static long toMillis( final long nanos ) {
+        return TimeUnit.NANOSECONDS.toMillis( nanos );
+    }
+
+    private static class Timer {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record( final long nanos ) {
+            count.incrementAndGet();
+            totalNanos.addAndGet( nanos );
+            long max = maxNanos.get();
+            while ( nanos > max && !maxNanos.compareAndSet( max,
+                                                            nanos ) ) {
+                max = maxNanos.get();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics of the build pipeline. See BuildMetrics for the names of the timers and counters.
+ */
+public interface BuildMetricsCollectorMXBean {
+
+    Map<String, Long> getCounters();
+
+    Map<String, Long> getTimerCounts();
+
+    Map<String, Long> getTimerTotalMillis();
+
+    Map<String, Long> getTimerMaxMillis();
+
+    Map<String, Long> getFullBuildCounts();
+
+    Map<String, Long> getIncrementalBuildCounts();
+
+    void reset();
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import org.guvnor.common.services.shared.config.AppConfigService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the preferences that configure builds. Preferences that are not set, or cannot be parsed, have their default
+ * value; a warning is logged for those that cannot be parsed.
+ */
+final class BuildPreferences {
+
+    private static final Logger log = LoggerFactory.getLogger( BuildPreferences.class );
+
+    private BuildPreferences() {
+    }
+
+    /**
+     * Read a numeric preference
+     * @param appConfigService
+     * @param name
+     * @param defaultValue
+     * @return
+     */
+    static long getLong( final AppConfigService appConfigService,
+                         final String name,
+                         final long defaultValue ) {
+        return getLong( appConfigService,
+                        name,
+                        defaultValue,
+                        Long.MIN_VALUE );
+    }
+
+    /**
+     * Read a numeric preference, raising values less than the minimum to the minimum
+     * @param appConfigService
+     * @param name
+     * @param defaultValue
+     * @param minValue
+     * @return
+     */
+    static long getLong( final AppConfigService appConfigService,
+                         final String name,
+                         final long defaultValue,
+                         final long minValue ) {
+        final String value = getString( appConfigService,
+                                        name );
+        if ( value == null ) {
+            return defaultValue;
+        }
+        try {
+            return Math.max( minValue,
+                             Long.parseLong( value ) );
+        } catch ( NumberFormatException nfe ) {
+            log.warn( "Invalid value '" + value + "' for preference '" + name + "'. Using " + defaultValue + "." );
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Read a preference
+     * @param appConfigService
+     * @param name
+     * @return The trimmed value, or null if the preference is not set or is blank
+     */
+    static String getString( final AppConfigService appConfigService,
+                             final String name ) {
+        final String value = appConfigService.loadPreferences().get( name );
+        if ( value == null || value.trim().isEmpty() ) {
+            return null;
+        }
+        return value.trim();
+    }
+
+}
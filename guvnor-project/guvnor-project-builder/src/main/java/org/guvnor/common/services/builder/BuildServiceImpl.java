@@ -17,25 +17,26 @@
 package org.guvnor.common.services.builder;
 
 import java.io.ByteArrayInputStream;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 import javax.enterprise.context.ApplicationScoped;
-import javax.enterprise.inject.Instance;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 
 import org.drools.compiler.kie.builder.impl.InternalKieModule;
 import org.guvnor.common.services.backend.exceptions.ExceptionUtilities;
+import org.guvnor.common.services.project.builder.model.BuildMessage;
+import org.guvnor.common.services.project.builder.model.BuildMetrics;
 import org.guvnor.common.services.project.builder.model.BuildResults;
 import org.guvnor.common.services.project.builder.model.IncrementalBuildResults;
 import org.guvnor.common.services.project.builder.service.BuildService;
-import org.guvnor.common.services.project.builder.service.PostBuildHandler;
 import org.guvnor.common.services.project.model.POM;
 import org.guvnor.common.services.project.model.Project;
 import org.guvnor.common.services.project.service.POMService;
 import org.guvnor.common.services.project.service.ProjectService;
 import org.guvnor.m2repo.backend.server.ExtendedM2RepoService;
 import org.jboss.errai.bus.server.annotations.Service;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.uberfire.backend.server.util.Paths;
 import org.uberfire.backend.vfs.Path;
 import org.uberfire.workbench.events.ResourceChange;
@@ -45,14 +46,16 @@ import org.uberfire.workbench.events.ResourceChange;
 public class BuildServiceImpl
         implements BuildService {
 
-    private static final Logger logger = LoggerFactory.getLogger(BuildServiceImpl.class);
-
     private Paths paths;
     private POMService pomService;
     private ExtendedM2RepoService m2RepoService;
     private ProjectService projectService;
     private LRUBuilderCache cache;
-    private Instance<PostBuildHandler> handlers;
+    private BuildSnapshotStore snapshotStore;
+    private BuildMessagesStore messagesStore;
+    private BuildMetricsCollector metrics;
+    private Event<KieModuleChangedEvent> kieModuleChangedEvent;
+    private PostBuildHandlerDispatcher handlers;
 
     public BuildServiceImpl() {
         //Empty constructor for Weld
@@ -64,20 +67,29 @@ public class BuildServiceImpl
                              final ExtendedM2RepoService m2RepoService,
                              final ProjectService projectService,
                              final LRUBuilderCache cache,
-                             final Instance<PostBuildHandler> handlers) {
+                             final BuildSnapshotStore snapshotStore,
+                             final BuildMessagesStore messagesStore,
+                             final BuildMetricsCollector metrics,
+                             final Event<KieModuleChangedEvent> kieModuleChangedEvent,
+                             final PostBuildHandlerDispatcher handlers ) {
         this.paths = paths;
         this.pomService = pomService;
         this.m2RepoService = m2RepoService;
         this.projectService = projectService;
         this.cache = cache;
+        this.snapshotStore = snapshotStore;
+        this.messagesStore = messagesStore;
+        this.metrics = metrics;
+        this.kieModuleChangedEvent = kieModuleChangedEvent;
         this.handlers = handlers;
     }
 
     @Override
     public BuildResults build( final Project project ) {
         try {
-            final BuildResults results = doBuild( project );
-            return results;
+            final BuildOutcome outcome = doBuild( project,
+                                                  false );
+            return messagesStore.truncate( outcome.results );
 
         } catch ( Exception e ) {
             throw ExceptionUtilities.handleException( e );
@@ -86,45 +98,120 @@ public class BuildServiceImpl
 
     @Override
     public BuildResults buildAndDeploy( final Project project ) {
+        return buildAndDeploy( project,
+                               null );
+    }
+
+    /**
+     * Build a Project and, if there are no errors, deploy its KieModule and notify PostBuildHandlers. If the
+     * KieModule differs from that previously deployed a KieModuleChangedEvent is fired.
+     * @param project
+     * @param beforeDeploy Run before the KieModule is deployed, if it is to be. Can be null.
+     * @return
+     */
+    BuildResults buildAndDeploy( final Project project,
+                                 final Runnable beforeDeploy ) {
         try {
             //Build
-            final BuildResults results = doBuild( project );
+            final BuildOutcome outcome = doBuild( project,
+                                                  true );
 
             //Deploy, if no errors
-            final POM pom = pomService.load( project.getPomXMLPath() );
-            if ( results.getMessages().isEmpty() ) {
-                final Builder builder = cache.assertBuilder( project );
-                final InternalKieModule kieModule = (InternalKieModule) builder.getKieModule();
-                final ByteArrayInputStream input = new ByteArrayInputStream( kieModule.getBytes() );
-                m2RepoService.deployJar( input,
-                                         pom.getGav() );
-
-                for (PostBuildHandler handler : handlers) {
-                    try {
-                        handler.process(results);
-                    } catch (Exception e) {
-                        logger.warn("PostBuildHandler {} failed due to {}", handler, e.getMessage());
-                    }
+            if ( outcome.kieModuleBytes != null ) {
+                if ( beforeDeploy != null ) {
+                    beforeDeploy.run();
                 }
+                deploy( project,
+                        outcome.results,
+                        outcome.kieModuleBytes );
             }
 
-            return results;
+            return messagesStore.truncate( outcome.results );
 
         } catch ( Exception e ) {
             throw ExceptionUtilities.handleException( e );
         }
     }
 
-    private BuildResults doBuild( final Project project ) {
-        final Builder builder = cache.assertBuilder( project );
-        final BuildResults results = builder.build();
-        return results;
+    private void deploy( final Project project,
+                         final BuildResults results,
+                         final byte[] kieModuleBytes ) {
+        final long startTime = System.nanoTime();
+        final POM pom = pomService.load( project.getPomXMLPath() );
+        final ByteArrayInputStream input = new ByteArrayInputStream( kieModuleBytes );
+        final boolean isChanged = m2RepoService.deployJar( input,
+                                                           pom.getGav() );
+        metrics.recordTime( BuildMetrics.TIMER_DEPLOY,
+                            System.nanoTime() - startTime );
+
+        //Projects depending on this Project need only be rebuilt if its KieModule has changed
+        if ( isChanged ) {
+            kieModuleChangedEvent.fire( new KieModuleChangedEvent( project ) );
+        }
+
+        handlers.dispatch( results );
+    }
+
+    //The KieModule to be deployed is read whilst the build lock is still held, so it is the one whose results gate
+    //the deployment and not one since changed by an incremental build
+    private BuildOutcome doBuild( final Project project,
+                                  final boolean isDeploy ) {
+        final BuildResults results;
+        final BuildSnapshot snapshot;
+        byte[] kieModuleBytes = null;
+        final Lock lock = cache.getBuildLock( project );
+        lock.lock();
+        try {
+            final Builder builder = cache.assertBuilder( project );
+            //Builders restored from a snapshot are not compiled
+            final boolean isRestored = builder.isRestored();
+            results = builder.build();
+            metrics.recordFullBuild( project );
+            if ( !isRestored ) {
+                metrics.recordTime( BuildMetrics.TIMER_COMPILE,
+                                    builder.getCompileTime() );
+                metrics.recordTime( BuildMetrics.TIMER_VALIDATION,
+                                    builder.getValidationTime() );
+            }
+            snapshot = ( snapshotStore.isEnabled() ? builder.createSnapshot( results ) : null );
+            if ( isDeploy && results.getTotalMessageCount() == 0 ) {
+                kieModuleBytes = ( (InternalKieModule) builder.getKieModule() ).getBytes();
+            }
+
+        } finally {
+            lock.unlock();
+        }
+
+        //Persist the outcome so the Builder can be restored after a restart
+        if ( snapshot != null ) {
+            snapshotStore.save( project,
+                                results.getGAV(),
+                                snapshot );
+        }
+        return new BuildOutcome( results,
+                                 kieModuleBytes );
     }
 
     @Override
     public boolean isBuilt( final Project project ) {
-        final Builder builder = cache.assertBuilder( project );
-        return builder.isBuilt();
+        final Lock lock = cache.getBuildLock( project );
+        lock.lock();
+        try {
+            final Builder builder = cache.assertBuilder( project );
+            return builder.isBuilt();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<BuildMessage> getBuildMessages( final String messagesId,
+                                                final int startIndex,
+                                                final int pageSize ) {
+        return messagesStore.getMessages( messagesId,
+                                          startIndex,
+                                          pageSize );
     }
 
     @Override
@@ -135,11 +222,18 @@ public class BuildServiceImpl
             if ( project == null ) {
                 return results;
             }
-            final Builder builder = cache.assertBuilder( project );
-            if ( !builder.isBuilt() ) {
-                throw new IllegalStateException( "Incremental Build requires a full build be completed first." );
-            } else {
-                results = builder.addResource( paths.convert( resource ) );
+            final Lock lock = cache.getBuildLock( project );
+            lock.lock();
+            try {
+                final Builder builder = cache.assertBuilder( project );
+                if ( !builder.isBuilt() ) {
+                    throw new IllegalStateException( "Incremental Build requires a full build be completed first." );
+                } else {
+                    results = builder.addResource( paths.convert( resource ) );
+                    metrics.recordIncrementalBuild( project );
+                }
+            } finally {
+                lock.unlock();
             }
 
             return results;
@@ -157,11 +251,18 @@ public class BuildServiceImpl
             if ( project == null ) {
                 return results;
             }
-            final Builder builder = cache.assertBuilder( project );
-            if ( !builder.isBuilt() ) {
-                throw new IllegalStateException( "Incremental Build requires a full build be completed first." );
-            } else {
-                results = builder.deleteResource( paths.convert( resource ) );
+            final Lock lock = cache.getBuildLock( project );
+            lock.lock();
+            try {
+                final Builder builder = cache.assertBuilder( project );
+                if ( !builder.isBuilt() ) {
+                    throw new IllegalStateException( "Incremental Build requires a full build be completed first." );
+                } else {
+                    results = builder.deleteResource( paths.convert( resource ) );
+                    metrics.recordIncrementalBuild( project );
+                }
+            } finally {
+                lock.unlock();
             }
 
             return results;
@@ -179,11 +280,18 @@ public class BuildServiceImpl
             if ( project == null ) {
                 return results;
             }
-            final Builder builder = cache.assertBuilder( project );
-            if ( !builder.isBuilt() ) {
-                throw new IllegalStateException( "Incremental Build requires a full build be completed first." );
-            } else {
-                results = builder.updateResource( paths.convert( resource ) );
+            final Lock lock = cache.getBuildLock( project );
+            lock.lock();
+            try {
+                final Builder builder = cache.assertBuilder( project );
+                if ( !builder.isBuilt() ) {
+                    throw new IllegalStateException( "Incremental Build requires a full build be completed first." );
+                } else {
+                    results = builder.updateResource( paths.convert( resource ) );
+                    metrics.recordIncrementalBuild( project );
+                }
+            } finally {
+                lock.unlock();
             }
 
             return results;
@@ -201,11 +309,18 @@ public class BuildServiceImpl
             if ( project == null ) {
                 return results;
             }
-            final Builder builder = cache.assertBuilder( project );
-            if ( !builder.isBuilt() ) {
-                throw new IllegalStateException( "Incremental Build requires a full build be completed first." );
-            } else {
-                results = builder.applyBatchResourceChanges( changes );
+            final Lock lock = cache.getBuildLock( project );
+            lock.lock();
+            try {
+                final Builder builder = cache.assertBuilder( project );
+                if ( !builder.isBuilt() ) {
+                    throw new IllegalStateException( "Incremental Build requires a full build be completed first." );
+                } else {
+                    results = builder.applyBatchResourceChanges( changes );
+                    metrics.recordIncrementalBuild( project );
+                }
+            } finally {
+                lock.unlock();
             }
 
             return results;
@@ -215,4 +330,18 @@ public class BuildServiceImpl
         }
     }
 
+    private static class BuildOutcome {
+
+        private final BuildResults results;
+
+        //Null unless the KieModule is to be deployed
+        private final byte[] kieModuleBytes;
+
+        private BuildOutcome( final BuildResults results,
+                              final byte[] kieModuleBytes ) {
+            this.results = results;
+            this.kieModuleBytes = kieModuleBytes;
+        }
+    }
+
 }
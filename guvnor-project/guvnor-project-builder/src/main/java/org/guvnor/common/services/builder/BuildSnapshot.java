@@ -0,0 +1,139 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The outcome of a full build of a Project, from which a {@link Builder} can be restored without re-compiling
+ * the Project, provided neither the content of the Project's resources nor the JARs of its direct dependencies
+ * have changed.
+ */
+public class BuildSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    private final String gav;
+    private final HashMap<String, String> resourceDigests;
+    private final HashMap<String, String> dependencyDigests;
+    private final HashSet<String> javaResources;
+    private final byte[] kieModuleBytes;
+    private final ArrayList<Message> messages;
+
+    public BuildSnapshot( final String gav,
+                          final Map<String, String> resourceDigests,
+                          final Map<String, String> dependencyDigests,
+                          final Set<String> javaResources,
+                          final byte[] kieModuleBytes,
+                          final List<Message> messages ) {
+        this.gav = gav;
+        this.resourceDigests = new HashMap<String, String>( resourceDigests );
+        this.dependencyDigests = new HashMap<String, String>( dependencyDigests );
+        this.javaResources = new HashSet<String>( javaResources );
+        this.kieModuleBytes = kieModuleBytes;
+        this.messages = new ArrayList<Message>( messages );
+    }
+
+    public String getGAV() {
+        return gav;
+    }
+
+    public Map<String, String> getResourceDigests() {
+        return Collections.unmodifiableMap( resourceDigests );
+    }
+
+    /**
+     * Identities of the JARs of the Project's direct dependencies when the snapshot was taken, keyed by GAV
+     * @return
+     */
+    public Map<String, String> getDependencyDigests() {
+        return Collections.unmodifiableMap( dependencyDigests );
+    }
+
+    public Set<String> getJavaResources() {
+        return Collections.unmodifiableSet( javaResources );
+    }
+
+    public byte[] getKieModuleBytes() {
+        return kieModuleBytes;
+    }
+
+    public List<Message> getMessages() {
+        return Collections.unmodifiableList( messages );
+    }
+
+    /**
+     * A BuildMessage in a form independent of the VFS. The resource is identified by its path relative to the
+     * Project root, or null if the message does not relate to a resource within the Project.
+     */
+    public static class Message implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String level;
+        private final long id;
+        private final String resource;
+        private final int line;
+        private final int column;
+        private final String text;
+
+        public Message( final String level,
+                        final long id,
+                        final String resource,
+                        final int line,
+                        final int column,
+                        final String text ) {
+            this.level = level;
+            this.id = id;
+            this.resource = resource;
+            this.line = line;
+            this.column = column;
+            this.text = text;
+        }
+
+        public String getLevel() {
+            return level;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getResource() {
+            return resource;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+}
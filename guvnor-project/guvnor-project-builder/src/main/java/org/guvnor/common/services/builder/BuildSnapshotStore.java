@@ -0,0 +1,164 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.MessageDigest;
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.common.services.project.model.Project;
+import org.guvnor.common.services.shared.config.AppConfigService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists BuildSnapshots so Builders can be restored, rather than re-compiled, after a restart. Snapshots are
+ * stored per Project and GAV in the directory set by the "build.snapshot-dir" preference; if the preference is
+ * not set snapshots are not stored.
+ */
+@ApplicationScoped
+public class BuildSnapshotStore {
+
+    private static final String SNAPSHOT_DIR_PROPERTY_NAME = "build.snapshot-dir";
+
+    private static final String SNAPSHOT_FILE_EXTENSION = ".snapshot";
+
+    private static final Logger log = LoggerFactory.getLogger( BuildSnapshotStore.class );
+
+    @Inject
+    private AppConfigService appConfigService;
+
+    private File snapshotDirectory;
+
+    @PostConstruct
+    public void setup() {
+        final String value = BuildPreferences.getString( appConfigService,
+                                                         SNAPSHOT_DIR_PROPERTY_NAME );
+        if ( value == null ) {
+            return;
+        }
+        final File directory = new File( value );
+        if ( !( directory.isDirectory() || directory.mkdirs() ) ) {
+            log.warn( "Unable to create build snapshot directory '" + directory.getAbsolutePath() + "'. Build snapshots are disabled." );
+            return;
+        }
+        snapshotDirectory = directory;
+    }
+
+    public boolean isEnabled() {
+        return snapshotDirectory != null;
+    }
+
+    /**
+     * Load the snapshot of a Project
+     * @param project
+     * @param gav
+     * @return The snapshot, or null if there is none or it cannot be read
+     */
+    public BuildSnapshot load( final Project project,
+                               final GAV gav ) {
+        if ( !isEnabled() ) {
+            return null;
+        }
+        final File file = getSnapshotFile( project,
+                                           gav );
+        if ( !file.exists() ) {
+            return null;
+        }
+        try {
+            final ObjectInputStream ois = new ObjectInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+            try {
+                return (BuildSnapshot) ois.readObject();
+            } finally {
+                ois.close();
+            }
+
+        } catch ( Exception e ) {
+            log.warn( "Unable to read build snapshot '" + file.getAbsolutePath() + "': " + e.getMessage() );
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Store the snapshot of a Project, replacing any existing snapshot
+     * @param project
+     * @param gav
+     * @param snapshot
+     */
+    public void save( final Project project,
+                      final GAV gav,
+                      final BuildSnapshot snapshot ) {
+        if ( !isEnabled() || snapshot == null ) {
+            return;
+        }
+        final File file = getSnapshotFile( project,
+                                           gav );
+        final File tmpFile = new File( file.getPath() + ".tmp" );
+        try {
+            final ObjectOutputStream oos = new ObjectOutputStream( new BufferedOutputStream( new FileOutputStream( tmpFile ) ) );
+            try {
+                oos.writeObject( snapshot );
+            } finally {
+                oos.close();
+            }
+            //Replace the previous snapshot only once the new one has been written completely
+            if ( !( tmpFile.renameTo( file ) || ( file.delete() && tmpFile.renameTo( file ) ) ) ) {
+                log.warn( "Unable to write build snapshot '" + file.getAbsolutePath() + "'." );
+                tmpFile.delete();
+            }
+
+        } catch ( Exception e ) {
+            log.warn( "Unable to write build snapshot '" + file.getAbsolutePath() + "': " + e.getMessage() );
+            tmpFile.delete();
+        }
+    }
+
+    private File getSnapshotFile( final Project project,
+                                  final GAV gav ) {
+        final String key = project.getRootPath().toURI() + "|" + gav;
+        return new File( snapshotDirectory,
+                         toHex( key ) + SNAPSHOT_FILE_EXTENSION );
+    }
+
+    private String toHex( final String key ) {
+        try {
+            final byte[] digest = MessageDigest.getInstance( "SHA-1" ).digest( key.getBytes( "UTF-8" ) );
+            final StringBuilder sb = new StringBuilder( digest.length * 2 );
+            for ( byte b : digest ) {
+                sb.append( Character.forDigit( ( b >> 4 ) & 0xF,
+                                               16 ) );
+                sb.append( Character.forDigit( b & 0xF,
+                                               16 ) );
+            }
+            return sb.toString();
+
+        } catch ( Exception e ) {
+            //SHA-1 and UTF-8 are required to be supported by every Java platform
+            throw new IllegalStateException( e );
+        }
+    }
+
+}
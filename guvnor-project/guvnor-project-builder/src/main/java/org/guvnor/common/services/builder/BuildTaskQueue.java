@@ -0,0 +1,337 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.kie.commons.validation.PortablePreconditions;
+
+/**
+ * A bounded queue for the build executor ordering tasks by {@link BuildPriority}, and FIFO within a priority.
+ * To prevent starvation a task that has waited longer than the starvation threshold is taken before tasks of
+ * higher priority.
+ */
+class BuildTaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    private final int capacity;
+    private final long starvationThreshold;
+
+    //One FIFO per priority, indexed by ordinal
+    private final List<LinkedList<Entry>> queues = new ArrayList<LinkedList<Entry>>();
+    private int count = 0;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * @param capacity Maximum number of queued tasks
+     * @param starvationThreshold Time, in milliseconds, after which a task is taken regardless of its priority
+     */
+    BuildTaskQueue( final int capacity,
+                    final long starvationThreshold ) {
+        this.capacity = capacity;
+        this.starvationThreshold = TimeUnit.MILLISECONDS.toNanos( starvationThreshold );
+        for ( int i = 0; i < BuildPriority.values().length; i++ ) {
+            queues.add( new LinkedList<Entry>() );
+        }
+    }
+
+    @Override
+    public boolean offer( final Runnable task ) {
+        PortablePreconditions.checkNotNull( "task",
+                                            task );
+        lock.lock();
+        try {
+            if ( count >= capacity ) {
+                return false;
+            }
+            enqueue( task );
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer( final Runnable task,
+                          final long timeout,
+                          final TimeUnit unit ) throws InterruptedException {
+        PortablePreconditions.checkNotNull( "task",
+                                            task );
+        long nanos = unit.toNanos( timeout );
+        lock.lockInterruptibly();
+        try {
+            while ( count >= capacity ) {
+                if ( nanos <= 0 ) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos( nanos );
+            }
+            enqueue( task );
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put( final Runnable task ) throws InterruptedException {
+        PortablePreconditions.checkNotNull( "task",
+                                            task );
+        lock.lockInterruptibly();
+        try {
+            while ( count >= capacity ) {
+                notFull.await();
+            }
+            enqueue( task );
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while ( count == 0 ) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return ( count == 0 ? null : dequeue() );
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll( final long timeout,
+                          final TimeUnit unit ) throws InterruptedException {
+        long nanos = unit.toNanos( timeout );
+        lock.lockInterruptibly();
+        try {
+            while ( count == 0 ) {
+                if ( nanos <= 0 ) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos( nanos );
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            final LinkedList<Entry> queue = select();
+            return ( queue == null ? null : queue.getFirst().task );
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove( final Object o ) {
+        lock.lock();
+        try {
+            for ( LinkedList<Entry> queue : queues ) {
+                final Iterator<Entry> itr = queue.iterator();
+                while ( itr.hasNext() ) {
+                    if ( itr.next().task.equals( o ) ) {
+                        itr.remove();
+                        count--;
+                        notFull.signal();
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo( final Collection<? super Runnable> c ) {
+        return drainTo( c,
+                        Integer.MAX_VALUE );
+    }
+
+    @Override
+    public int drainTo( final Collection<? super Runnable> c,
+                        final int maxElements ) {
+        PortablePreconditions.checkNotNull( "c",
+                                            c );
+        lock.lock();
+        try {
+            int n = 0;
+            while ( n < maxElements && count > 0 ) {
+                c.add( dequeue() );
+                n++;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Iterates over a snapshot of the queued tasks, in no particular order
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        lock.lock();
+        try {
+            for ( LinkedList<Entry> queue : queues ) {
+                for ( Entry entry : queue ) {
+                    tasks.add( entry.task );
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        final Iterator<Runnable> itr = tasks.iterator();
+        return new Iterator<Runnable>() {
+            private Runnable last;
+
+            @Override
+            public boolean hasNext() {
+                return itr.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                last = itr.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if ( last == null ) {
+                    throw new IllegalStateException();
+                }
+                BuildTaskQueue.this.remove( last );
+                last = null;
+            }
+        };
+    }
+
+    //Callers must hold the lock
+    private void enqueue( final Runnable task ) {
+        queues.get( getPriority( task ).ordinal() ).addLast( new Entry( task,
+                                                                        System.nanoTime() ) );
+        count++;
+        notEmpty.signal();
+    }
+
+    //Callers must hold the lock and there must be at least one task
+    private Runnable dequeue() {
+        final LinkedList<Entry> queue = select();
+        if ( queue == null ) {
+            throw new NoSuchElementException();
+        }
+        count--;
+        notFull.signal();
+        return queue.removeFirst().task;
+    }
+
+    //Select the queue from which the next task is taken: that holding the longest waiting task, if it has waited
+    //longer than the starvation threshold, otherwise that of the highest priority
+    private LinkedList<Entry> select() {
+        final long now = System.nanoTime();
+        LinkedList<Entry> highest = null;
+        LinkedList<Entry> starved = null;
+        for ( LinkedList<Entry> queue : queues ) {
+            if ( queue.isEmpty() ) {
+                continue;
+            }
+            if ( highest == null ) {
+                highest = queue;
+            }
+            final long enqueueTime = queue.getFirst().enqueueTime;
+            if ( now - enqueueTime > starvationThreshold && ( starved == null || enqueueTime - starved.getFirst().enqueueTime < 0 ) ) {
+                starved = queue;
+            }
+        }
+        return ( starved != null ? starved : highest );
+    }
+
+    private static BuildPriority getPriority( final Runnable task ) {
+        if ( task instanceof PrioritizedBuildTask ) {
+            final BuildPriority priority = ( (PrioritizedBuildTask) task ).getPriority();
+            if ( priority != null ) {
+                return priority;
+            }
+        }
+        return BuildPriority.FULL_BUILD;
+    }
+
+    private static class Entry {
+
+        private final Runnable task;
+        private final long enqueueTime;
+
+        private Entry( final Runnable task,
+                       final long enqueueTime ) {
+            this.task = task;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.guvnor.common.services.project.builder.service.BuildValidationHelper;
+import org.guvnor.common.services.project.builder.service.SuffixAwareBuildValidationHelper;
+import org.guvnor.common.services.shared.validation.model.ValidationMessage;
+import org.kie.commons.java.nio.file.Path;
+import org.uberfire.backend.server.util.Paths;
+
+/**
+ * Selects the BuildValidationHelper for a path. Helpers are indexed by the file extensions they declare; only
+ * helpers that do not declare their suffixes are asked whether they accept a path. Helpers are consulted in the
+ * order in which they were registered and the helper selected for each path is cached. Thread-safe.
+ */
+class BuildValidationHelperIndex {
+
+    //Marks paths for which there is no helper, as ConcurrentHashMap does not permit null values
+    private static final BuildValidationHelper NONE = new BuildValidationHelper() {
+        @Override
+        public boolean accepts( final org.uberfire.backend.vfs.Path path ) {
+            return false;
+        }
+
+        @Override
+        public List<ValidationMessage> validate( final org.uberfire.backend.vfs.Path path ) {
+            return Collections.emptyList();
+        }
+    };
+
+    private final List<BuildValidationHelper> buildValidationHelpers;
+    private final Paths paths;
+
+    //Helpers that could support a file, in order of registration, keyed on the file's extension
+    private final Map<String, List<BuildValidationHelper>> candidates = new ConcurrentHashMap<String, List<BuildValidationHelper>>();
+    private final Map<Path, BuildValidationHelper> selections = new ConcurrentHashMap<Path, BuildValidationHelper>();
+
+    BuildValidationHelperIndex( final List<BuildValidationHelper> buildValidationHelpers,
+                                final Paths paths ) {
+        this.buildValidationHelpers = buildValidationHelpers;
+        this.paths = paths;
+    }
+
+    /**
+     * Get the helper for a path
+     * @param resource
+     * @return The helper, or null if no helper supports the path
+     */
+    BuildValidationHelper getBuildValidationHelper( final Path resource ) {
+        BuildValidationHelper selection = selections.get( resource );
+        if ( selection == null ) {
+            selection = select( resource );
+            selections.put( resource,
+                            selection );
+        }
+        return ( selection == NONE ? null : selection );
+    }
+
+    /**
+     * Forget the helper selected for a path, for example when the path has been deleted
+     * @param resource
+     */
+    void remove( final Path resource ) {
+        selections.remove( resource );
+    }
+
+    private BuildValidationHelper select( final Path resource ) {
+        final Path fileName = resource.getFileName();
+        if ( fileName == null ) {
+            return NONE;
+        }
+        final String name = fileName.toString();
+        org.uberfire.backend.vfs.Path vfsPath = null;
+        for ( BuildValidationHelper validator : getCandidates( getExtension( name ) ) ) {
+            if ( validator instanceof SuffixAwareBuildValidationHelper ) {
+                for ( String suffix : ( (SuffixAwareBuildValidationHelper) validator ).getSuffixes() ) {
+                    if ( name.endsWith( suffix ) ) {
+                        return validator;
+                    }
+                }
+            } else {
+                if ( vfsPath == null ) {
+                    vfsPath = paths.convert( resource );
+                }
+                if ( validator.accepts( vfsPath ) ) {
+                    return validator;
+                }
+            }
+        }
+        return NONE;
+    }
+
+    private List<BuildValidationHelper> getCandidates( final String extension ) {
+        List<BuildValidationHelper> helpers = candidates.get( extension );
+        if ( helpers == null ) {
+            helpers = new ArrayList<BuildValidationHelper>();
+            for ( BuildValidationHelper validator : buildValidationHelpers ) {
+                if ( !( validator instanceof SuffixAwareBuildValidationHelper ) || declaresExtension( (SuffixAwareBuildValidationHelper) validator,
+                                                                                                     extension ) ) {
+                    helpers.add( validator );
+                }
+            }
+            candidates.put( extension,
+                            helpers );
+        }
+        return helpers;
+    }
+
+    private boolean declaresExtension( final SuffixAwareBuildValidationHelper validator,
+                                       final String extension ) {
+        for ( String suffix : validator.getSuffixes() ) {
+            if ( getExtension( suffix ).equals( extension ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getExtension( final String name ) {
+        final int index = name.lastIndexOf( '.' );
+        return ( index < 0 ? "" : name.substring( index + 1 ) );
+    }
+
+}
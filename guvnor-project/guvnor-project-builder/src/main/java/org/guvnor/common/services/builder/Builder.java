@@ -16,15 +16,31 @@
 
 package org.guvnor.common.services.builder;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
 import org.drools.workbench.models.commons.shared.imports.Import;
 import org.drools.workbench.models.commons.shared.imports.Imports;
 import org.drools.workbench.models.commons.shared.oracle.model.TypeSource;
@@ -34,6 +50,7 @@ import org.guvnor.common.services.project.builder.model.BuildMessage;
 import org.guvnor.common.services.project.builder.model.BuildResults;
 import org.guvnor.common.services.project.builder.model.IncrementalBuildResults;
 import org.guvnor.common.services.project.builder.service.BuildValidationHelper;
+import org.guvnor.common.services.project.model.Dependency;
 import org.guvnor.common.services.project.model.GAV;
 import org.guvnor.common.services.project.model.Package;
 import org.guvnor.common.services.project.model.ProjectImports;
@@ -49,6 +66,7 @@ import org.kie.api.runtime.KieContainer;
 import org.kie.commons.io.IOService;
 import org.kie.commons.java.nio.file.DirectoryStream;
 import org.kie.commons.java.nio.file.Files;
+import org.kie.commons.java.nio.file.NoSuchFileException;
 import org.kie.commons.java.nio.file.Path;
 import org.kie.commons.validation.PortablePreconditions;
 import org.kie.internal.builder.IncrementalResults;
@@ -58,6 +76,12 @@ import org.uberfire.backend.server.util.Paths;
 import org.uberfire.workbench.events.ChangeType;
 import org.uberfire.workbench.events.ResourceChange;
 
+/**
+ * Builder for a single Project. Builders are not thread-safe; callers must serialise operations on the same
+ * Builder (see {@link LRUBuilderCache#getBuildLock(org.guvnor.common.services.project.model.Project)}).
+ * The set of Java classes used by {@link #getClassSource(KieModuleMetaData, Class)} can however be read
+ * concurrently with builds.
+ */
 public class Builder {
 
     private final static String RESOURCE_PATH = "src/main/resources";
@@ -72,87 +96,251 @@ public class Builder {
     private final GAV gav;
     private final IOService ioService;
     private final ProjectService projectService;
+    private final ExecutorService executor;
 
     private final String projectPrefix;
 
-    private Map<String, org.uberfire.backend.vfs.Path> handles = new HashMap<String, org.uberfire.backend.vfs.Path>();
+    private Map<String, org.uberfire.backend.vfs.Path> handles = new ConcurrentHashMap<String, org.uberfire.backend.vfs.Path>();
 
-    private final List<BuildValidationHelper> buildValidationHelpers;
+    private final BuildValidationHelperIndex buildValidationHelpers;
     private final Map<Path, BuildValidationHelper> nonKieResourceValidationHelpers = new HashMap<Path, BuildValidationHelper>();
     private final Map<Path, List<ValidationMessage>> nonKieResourceValidationHelperMessages = new HashMap<Path, List<ValidationMessage>>();
 
     private final DirectoryStream.Filter<Path> javaResourceFilter = new JavaFileFilter();
     private final DirectoryStream.Filter<Path> dotFileFilter = new DotFileFilter();
 
-    private Set<String> javaResources = new HashSet<String>();
+    private Set<String> javaResources = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+    //Digest and size of the content of each resource in the KieFileSystem, keyed on KieFileSystem path
+    private final Map<String, String> resourceDigests = new HashMap<String, String>();
+    private final Map<String, Integer> resourceSizes = new HashMap<String, Integer>();
+    private volatile int resourceCount = 0;
+    private volatile long resourceBytes = 0;
+
+    //Time, in nanoseconds, taken by the last full build to compile the Project and run BuildValidationHelpers
+    private long compileTime = 0;
+    private final AtomicLong validationTime = new AtomicLong();
 
     private KieContainer kieContainer;
 
+    //Number of ERROR messages reported by the KieBuilder, and not yet removed, for each resource. The KieModule
+    //contains errors whilst this is not empty.
+    private final Map<String, Integer> kieErrorCounts = new HashMap<String, Integer>();
+
+    //Whether a class imported by project.imports was unavailable at the last full build
+    private boolean hasImportErrors = false;
+
+    //Direct dependencies of the Project, whose classes are looked up in the DependencyClassIndex and whose JARs are
+    //identified in BuildSnapshots
+    private DependencyClassIndex dependencyClassIndex;
+    private List<Dependency> dependencies = Collections.emptyList();
+
+    //Outcome of a previous full build restored from a BuildSnapshot. The messages are discarded once reported by
+    //build(), the KieModule when the Builder is next compiled.
+    private KieModule restoredKieModule;
+    private List<BuildMessage> restoredMessages;
+
     public Builder( final Path moduleDirectory,
                     final GAV gav,
                     final Paths paths,
                     final IOService ioService,
                     final ProjectService projectService,
                     final List<BuildValidationHelper> buildValidationHelpers ) {
+        this( moduleDirectory,
+              gav,
+              paths,
+              ioService,
+              projectService,
+              buildValidationHelpers,
+              null );
+    }
+
+    /**
+     * Create a Builder for the Project at the given module directory
+     * @param moduleDirectory Root directory of the Project
+     * @param gav GAV of the Project
+     * @param paths
+     * @param ioService
+     * @param projectService
+     * @param buildValidationHelpers Helpers for resources that are not validated by KIE
+     * @param executor ExecutorService used to read the Project's resources, and run BuildValidationHelpers, concurrently.
+     * If null both are performed sequentially on the calling thread. The number of threads of the ExecutorService bounds
+     * the parallelism.
+     */
+    public Builder( final Path moduleDirectory,
+                    final GAV gav,
+                    final Paths paths,
+                    final IOService ioService,
+                    final ProjectService projectService,
+                    final List<BuildValidationHelper> buildValidationHelpers,
+                    final ExecutorService executor ) {
         this.moduleDirectory = moduleDirectory;
         this.gav = gav;
         this.paths = paths;
         this.ioService = ioService;
         this.projectService = projectService;
-        this.buildValidationHelpers = buildValidationHelpers;
+        this.buildValidationHelpers = new BuildValidationHelperIndex( buildValidationHelpers,
+                                                                      paths );
+        this.executor = executor;
 
         projectPrefix = moduleDirectory.toUri().toString();
         kieServices = KieServices.Factory.get();
         kieFileSystem = kieServices.newKieFileSystem();
 
-        DirectoryStream<org.kie.commons.java.nio.file.Path> directoryStream = Files.newDirectoryStream( moduleDirectory );
-        visitPaths( directoryStream );
+        if ( executor == null ) {
+            DirectoryStream<org.kie.commons.java.nio.file.Path> directoryStream = Files.newDirectoryStream( moduleDirectory );
+            visitPaths( directoryStream );
+        } else {
+            visitPaths( executor );
+        }
     }
 
     public BuildResults build() {
-        //KieBuilder is not re-usable for successive "full" builds
-        kieBuilder = kieServices.newKieBuilder( kieFileSystem );
-        final Results kieResults = kieBuilder.buildAll().getResults();
-        final BuildResults results = convertMessages( kieResults );
-
-        //Validate paths that are not handled by Kie
-        for ( Map.Entry<Path, BuildValidationHelper> e : nonKieResourceValidationHelpers.entrySet() ) {
-            final Path resource = e.getKey();
-            final BuildValidationHelper validator = e.getValue();
-            final List<ValidationMessage> validationMessages = validator.validate( paths.convert( resource ) );
-            if ( !( validationMessages == null || validationMessages.isEmpty() ) ) {
-                for ( ValidationMessage validationMessage : validationMessages ) {
-                    results.addBuildMessage( convertValidationMessage( validationMessage ) );
+        //A Builder restored from a snapshot has not changed since the snapshot was taken, so its first build reports
+        //the restored outcome. Later builds, such as one explicitly requested, compile the Project.
+        if ( restoredMessages != null ) {
+            final BuildResults results = new BuildResults( gav );
+            for ( BuildMessage message : restoredMessages ) {
+                results.addBuildMessage( message );
+            }
+            restoredMessages = null;
+            return results;
+        }
+        return doBuild();
+    }
+
+    private BuildResults doBuild() {
+        restoredKieModule = null;
+        restoredMessages = null;
+
+        //Validate paths that are not handled by Kie whilst the KieBuilder compiles those that are. Results are merged
+        //in the order of the paths, so they do not depend on the order in which validation completes.
+        final List<Path> nonKieResources = new ArrayList<Path>( nonKieResourceValidationHelpers.keySet() );
+        Collections.sort( nonKieResources,
+                          new Comparator<Path>() {
+                              @Override
+                              public int compare( final Path p1,
+                                                  final Path p2 ) {
+                                  return p1.toUri().toString().compareTo( p2.toUri().toString() );
+                              }
+                          } );
+        validationTime.set( 0 );
+        final List<Future<List<ValidationMessage>>> validations = submitValidations( nonKieResources );
+
+        final BuildResults results;
+        try {
+            //KieBuilder is not re-usable for successive "full" builds
+            final long compileStartTime = System.nanoTime();
+            kieBuilder = kieServices.newKieBuilder( kieFileSystem );
+            final Results kieResults = kieBuilder.buildAll().getResults();
+            compileTime = System.nanoTime() - compileStartTime;
+            results = convertMessages( kieResults );
+            kieErrorCounts.clear();
+            for ( Message message : kieResults.getMessages() ) {
+                countKieError( message,
+                               1 );
+            }
+
+            nonKieResourceValidationHelperMessages.clear();
+            for ( int i = 0; i < nonKieResources.size(); i++ ) {
+                final Path resource = nonKieResources.get( i );
+                final List<ValidationMessage> validationMessages = getValidationMessages( resource,
+                                                                                          validations.get( i ) );
+                if ( !( validationMessages == null || validationMessages.isEmpty() ) ) {
+                    for ( ValidationMessage validationMessage : validationMessages ) {
+                        results.addBuildMessage( convertValidationMessage( validationMessage ) );
+                    }
+                    nonKieResourceValidationHelperMessages.put( resource,
+                                                                validationMessages );
+                }
+            }
+
+        } finally {
+            //Validations are not needed if the build failed
+            for ( Future<List<ValidationMessage>> validation : validations ) {
+                if ( validation != null ) {
+                    validation.cancel( true );
                 }
-                nonKieResourceValidationHelperMessages.put( resource,
-                                                            validationMessages );
             }
         }
 
         //Check external imports are available. These are loaded when a DMO is requested, but it's better to report them early
+        hasImportErrors = false;
         final org.kie.commons.java.nio.file.Path nioExternalImportsPath = moduleDirectory.resolve( "project.imports" );
         if ( Files.exists( nioExternalImportsPath ) ) {
             final org.uberfire.backend.vfs.Path externalImportsPath = paths.convert( nioExternalImportsPath );
             final ProjectImports projectImports = projectService.load( externalImportsPath );
             final Imports imports = projectImports.getImports();
             for ( final Import item : imports.getImports() ) {
-                try {
-                    Class clazz = this.getClass().getClassLoader().loadClass( item.getType() );
-                } catch ( ClassNotFoundException cnfe ) {
+                if ( !isClassAvailable( item.getType() ) ) {
                     results.addBuildMessage( makeMessage( ERROR_CLASS_NOT_FOUND,
-                                                          cnfe ) );
+                                                          new ClassNotFoundException( item.getType() ) ) );
+                    hasImportErrors = true;
                 }
             }
         }
 
-        //It's impossible to retrieve a KieContainer if the KieModule contains errors
-        if ( results.getMessages().isEmpty() ) {
-            kieContainer = kieServices.newKieContainer( kieBuilder.getKieModule().getReleaseId() );
+        if ( !hasErrors() ) {
+            setKieContainer( kieServices.newKieContainer( kieBuilder.getKieModule().getReleaseId() ) );
         }
 
         return results;
     }
 
+    //Validations are submitted to the executor, if there is one. A null element indicates the validation of the
+    //corresponding resource is to be performed on the calling thread.
+    private List<Future<List<ValidationMessage>>> submitValidations( final List<Path> resources ) {
+        final List<Future<List<ValidationMessage>>> validations = new ArrayList<Future<List<ValidationMessage>>>( resources.size() );
+        for ( final Path resource : resources ) {
+            if ( executor == null ) {
+                validations.add( null );
+                continue;
+            }
+            final BuildValidationHelper validator = nonKieResourceValidationHelpers.get( resource );
+            validations.add( executor.submit( new Callable<List<ValidationMessage>>() {
+                @Override
+                public List<ValidationMessage> call() throws Exception {
+                    return validate( validator,
+                                     resource );
+                }
+            } ) );
+        }
+        return validations;
+    }
+
+    private List<ValidationMessage> validate( final BuildValidationHelper validator,
+                                              final Path resource ) {
+        final long startTime = System.nanoTime();
+        try {
+            return validator.validate( paths.convert( resource ) );
+        } finally {
+            validationTime.addAndGet( System.nanoTime() - startTime );
+        }
+    }
+
+    private List<ValidationMessage> getValidationMessages( final Path resource,
+                                                           final Future<List<ValidationMessage>> validation ) {
+        if ( validation == null ) {
+            final BuildValidationHelper validator = nonKieResourceValidationHelpers.get( resource );
+            return validate( validator,
+                             resource );
+        }
+        try {
+            return validation.get();
+
+        } catch ( ExecutionException ee ) {
+            if ( ee.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) ee.getCause();
+            }
+            throw new RuntimeException( ee.getCause() );
+
+        } catch ( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted whilst validating Project resources.",
+                                             ie );
+        }
+    }
+
     public IncrementalBuildResults addResource( final Path resource ) {
         PortablePreconditions.checkNotNull( "resource",
                                             resource );
@@ -166,12 +354,19 @@ public class Builder {
         if ( !isBuilt() ) {
             throw new IllegalStateException( "A full build needs to be performed before any incremental operations." );
         }
-        //Add new resource
+        //Resources with unchanged content do not need to be re-built
         final String destinationPath = resource.toUri().toString().substring( projectPrefix.length() + 1 );
-        final InputStream is = ioService.newInputStream( resource );
-        final BufferedInputStream bis = new BufferedInputStream( is );
-        kieFileSystem.write( destinationPath,
-                             KieServices.Factory.get().getResources().newInputStreamResource( bis ) );
+        final byte[] content = readAllBytes( resource );
+        final String digest = digest( content );
+        if ( digest.equals( resourceDigests.get( destinationPath ) ) ) {
+            return new IncrementalBuildResults( gav );
+        }
+
+        //Add new resource
+        ensureKieBuilder();
+        writeToFileSystem( destinationPath,
+                           content,
+                           digest );
         addJavaClass( resource );
         handles.put( destinationPath,
                      paths.convert( resource ) );
@@ -206,6 +401,7 @@ public class Builder {
             nonKieResourceValidationHelperMessages.put( resource,
                                                         addedValidationMessages );
         }
+        updateKieContainer( incrementalResults );
 
         return results;
     }
@@ -225,8 +421,9 @@ public class Builder {
         }
 
         //Delete resource
+        ensureKieBuilder();
         final String destinationPath = resource.toUri().toString().substring( projectPrefix.length() + 1 );
-        kieFileSystem.delete( destinationPath );
+        deleteFromFileSystem( destinationPath );
         removeJavaClass( resource );
 
         //Incremental build
@@ -249,6 +446,8 @@ public class Builder {
                 }
             }
         }
+        buildValidationHelpers.remove( resource );
+        updateKieContainer( incrementalResults );
 
         return results;
     }
@@ -270,39 +469,49 @@ public class Builder {
         final List<String> changedFilesKieBuilderPaths = new ArrayList<String>();
         final List<ValidationMessage> nonKieResourceValidatorAddedMessages = new ArrayList<ValidationMessage>();
         final List<ValidationMessage> nonKieResourceValidatorRemovedMessages = new ArrayList<ValidationMessage>();
-        for ( ResourceChange change : changes ) {
-            final ChangeType type = change.getType();
-            final Path resource = paths.convert( change.getPath() );
-
-            //Only files can be processed
-            if ( !Files.isRegularFile( resource ) ) {
-                continue;
+        for ( ResolvedResourceChange resolvedChange : resolveResourceChanges( changes ) ) {
+            ChangeType type = resolvedChange.type;
+            final Path resource = resolvedChange.resource;
+            final String destinationPath = resolvedChange.destinationPath;
+
+            //A resource added or updated may have been deleted since, for example where the batch held both an UPDATE
+            //and a DELETE of it. It is then processed as deleted, if it was built.
+            byte[] content = null;
+            if ( type != ChangeType.DELETE ) {
+                content = readAllBytesIfExists( resource );
+                if ( content == null ) {
+                    if ( !resourceDigests.containsKey( destinationPath ) ) {
+                        continue;
+                    }
+                    type = ChangeType.DELETE;
+                }
             }
 
-            PortablePreconditions.checkNotNull( "type",
-                                                type );
-            PortablePreconditions.checkNotNull( "resource",
-                                                resource );
-
-            final BuildValidationHelper validator = getBuildValidationHelper( resource );
-            final String destinationPath = resource.toUri().toString().substring( projectPrefix.length() + 1 );
-            changedFilesKieBuilderPaths.add( destinationPath );
             switch ( type ) {
                 case ADD:
                 case UPDATE:
-                    final InputStream is = ioService.newInputStream( resource );
-                    final BufferedInputStream bis = new BufferedInputStream( is );
-                    kieFileSystem.write( destinationPath,
-                                         KieServices.Factory.get().getResources().newInputStreamResource( bis ) );
-                    addJavaClass( resource );
+                    //Resources with unchanged content do not need to be re-built
+                    final String digest = digest( content );
+                    if ( digest.equals( resourceDigests.get( destinationPath ) ) ) {
+                        break;
+                    }
+                    ensureKieBuilder();
+                    changedFilesKieBuilderPaths.add( destinationPath );
+                    writeToFileSystem( destinationPath,
+                                       content,
+                                       digest );
+                    if ( resolvedChange.fullyQualifiedClassName != null ) {
+                        javaResources.add( resolvedChange.fullyQualifiedClassName );
+                    }
                     handles.put( destinationPath,
-                                 change.getPath() );
+                                 resolvedChange.handle );
 
                     //Resource Type might require "external" validation (i.e. it's not covered by Kie)
-                    if ( validator != null ) {
+                    final BuildValidationHelper addedResourceValidator = getBuildValidationHelper( resource );
+                    if ( addedResourceValidator != null ) {
                         nonKieResourceValidationHelpers.put( resource,
-                                                             validator );
-                        final List<ValidationMessage> addedValidationMessages = validator.validate( paths.convert( resource ) );
+                                                             addedResourceValidator );
+                        final List<ValidationMessage> addedValidationMessages = addedResourceValidator.validate( resolvedChange.handle );
                         if ( !( addedValidationMessages == null || addedValidationMessages.isEmpty() ) ) {
                             for ( ValidationMessage validationMessage : addedValidationMessages ) {
                                 nonKieResourceValidatorAddedMessages.add( validationMessage );
@@ -321,11 +530,16 @@ public class Builder {
 
                     break;
                 case DELETE:
-                    kieFileSystem.delete( destinationPath );
-                    removeJavaClass( resource );
+                    ensureKieBuilder();
+                    changedFilesKieBuilderPaths.add( destinationPath );
+                    deleteFromFileSystem( destinationPath );
+                    if ( resolvedChange.fullyQualifiedClassName != null ) {
+                        javaResources.remove( resolvedChange.fullyQualifiedClassName );
+                    }
 
                     //Resource Type might have been validated "externally" (i.e. it's not covered by Kie). Clear any errors.
-                    if ( validator != null ) {
+                    final BuildValidationHelper deletedResourceValidator = getBuildValidationHelper( resource );
+                    if ( deletedResourceValidator != null ) {
                         nonKieResourceValidationHelpers.remove( resource );
                         final List<ValidationMessage> removedValidationMessages = nonKieResourceValidationHelperMessages.remove( resource );
                         if ( !( removedValidationMessages == null || removedValidationMessages.isEmpty() ) ) {
@@ -334,9 +548,15 @@ public class Builder {
                             }
                         }
                     }
+                    buildValidationHelpers.remove( resource );
             }
         }
 
+        //Nothing to build if the content of all changed resources is unchanged
+        if ( changedFilesKieBuilderPaths.isEmpty() ) {
+            return new IncrementalBuildResults( gav );
+        }
+
         //Perform the Incremental build
         final String[] kieBuilderPaths = new String[ changedFilesKieBuilderPaths.size() ];
         changedFilesKieBuilderPaths.toArray( kieBuilderPaths );
@@ -357,15 +577,120 @@ public class Builder {
         for ( Message message : incrementalResults.getRemovedMessages() ) {
             handles.remove( RESOURCE_PATH + "/" + message.getPath() );
         }
+        updateKieContainer( incrementalResults );
 
         return results;
     }
 
+    //Resolve a batch of changes in a single pass before any is applied. Resources already built are known to be files,
+    //so the VFS is only asked whether a resource is a file for those not yet built. This saves one call per change
+    //to a built resource; every resource added or updated is still read in full for its digest. Deleted resources no
+    //longer exist in the VFS, so only those that were built are processed. The package of Java resources is resolved
+    //once per directory.
+    private List<ResolvedResourceChange> resolveResourceChanges( final Set<ResourceChange> changes ) {
+        final List<ResolvedResourceChange> resolvedChanges = new ArrayList<ResolvedResourceChange>( changes.size() );
+        final Map<String, String> packageNames = new HashMap<String, String>();
+        for ( ResourceChange change : changes ) {
+            final ChangeType type = change.getType();
+            final org.uberfire.backend.vfs.Path handle = change.getPath();
+            PortablePreconditions.checkNotNull( "type",
+                                                type );
+            PortablePreconditions.checkNotNull( "resource",
+                                                handle );
+
+            final Path resource = paths.convert( handle );
+            final String destinationPath = resource.toUri().toString().substring( projectPrefix.length() + 1 );
+
+            //Only files can be processed
+            final boolean isBuilt = resourceDigests.containsKey( destinationPath );
+            if ( type == ChangeType.DELETE ? !isBuilt : !( isBuilt || Files.isRegularFile( resource ) ) ) {
+                continue;
+            }
+
+            final ResolvedResourceChange resolvedChange = new ResolvedResourceChange( type,
+                                                                                      resource,
+                                                                                      handle,
+                                                                                      destinationPath );
+            if ( javaResourceFilter.accept( resource ) ) {
+                resolvedChange.fullyQualifiedClassName = getFullyQualifiedClassName( resource,
+                                                                                     packageNames );
+            }
+            resolvedChanges.add( resolvedChange );
+        }
+        return resolvedChanges;
+    }
+
+    //Keep the KieContainer in step with the incrementally re-built KieModule. Whilst the Project has errors the
+    //KieContainer of the last error-free build, if any, is retained. A KieContainer is created once every error,
+    //including those of the last full build, has been corrected or its resource removed.
+    private void updateKieContainer( final IncrementalResults incrementalResults ) {
+        for ( Message message : incrementalResults.getRemovedMessages() ) {
+            countKieError( message,
+                           -1 );
+        }
+        for ( Message message : incrementalResults.getAddedMessages() ) {
+            countKieError( message,
+                           1 );
+        }
+        if ( hasErrors() ) {
+            return;
+        }
+        //The KieContainer's KieBases are created from the already compiled KieModule, without re-compiling it
+        final KieModule kieModule = ( (InternalKieBuilder) kieBuilder ).getKieModuleIgnoringErrors();
+        setKieContainer( kieServices.newKieContainer( kieModule.getReleaseId() ) );
+    }
+
+    //It's impossible to retrieve a KieContainer if the KieModule contains errors. Full and incremental builds apply
+    //the same rule: no ERROR from the KieBuilder, from BuildValidationHelpers or for classes in project.imports.
+    private boolean hasErrors() {
+        if ( !kieErrorCounts.isEmpty() || hasImportErrors ) {
+            return true;
+        }
+        for ( List<ValidationMessage> validationMessages : nonKieResourceValidationHelperMessages.values() ) {
+            if ( validationMessages == null ) {
+                continue;
+            }
+            for ( ValidationMessage validationMessage : validationMessages ) {
+                if ( validationMessage.getLevel() == ValidationMessage.Level.ERROR ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void countKieError( final Message message,
+                                final int delta ) {
+        if ( message.getLevel() != Message.Level.ERROR ) {
+            return;
+        }
+        final String resource = String.valueOf( message.getPath() );
+        final Integer count = kieErrorCounts.get( resource );
+        final int newCount = ( count == null ? 0 : count ) + delta;
+        if ( newCount > 0 ) {
+            kieErrorCounts.put( resource,
+                                newCount );
+        } else {
+            kieErrorCounts.remove( resource );
+        }
+    }
+
+    //Replace the KieContainer, disposing of the one it replaces
+    private void setKieContainer( final KieContainer kieContainer ) {
+        if ( this.kieContainer != null && this.kieContainer != kieContainer ) {
+            this.kieContainer.dispose();
+        }
+        this.kieContainer = kieContainer;
+    }
+
     public KieModule getKieModule() {
         //Kie classes are only available once built
         if ( !isBuilt() ) {
             build();
         }
+        if ( kieBuilder == null ) {
+            return restoredKieModule;
+        }
         return kieBuilder.getKieModule();
     }
 
@@ -374,6 +699,9 @@ public class Builder {
         if ( !isBuilt() ) {
             build();
         }
+        if ( kieBuilder == null ) {
+            return restoredKieModule;
+        }
         return ( (InternalKieBuilder) kieBuilder ).getKieModuleIgnoringErrors();
     }
 
@@ -385,8 +713,173 @@ public class Builder {
         return kieContainer;
     }
 
+    /**
+     * Time, in nanoseconds, the KieBuilder took to compile the Project in the last full build
+     * @return
+     */
+    public long getCompileTime() {
+        return compileTime;
+    }
+
+    /**
+     * Time, in nanoseconds, spent in BuildValidationHelpers in the last full build. Helpers can run concurrently,
+     * so this can exceed the elapsed time of the build.
+     * @return
+     */
+    public long getValidationTime() {
+        return validationTime.get();
+    }
+
+    /**
+     * Whether the Builder was restored from a snapshot and the restored outcome has not yet been returned by build()
+     * @return
+     */
+    public boolean isRestored() {
+        return restoredMessages != null;
+    }
+
+    /**
+     * Set the Project's dependencies. Their JARs are resolved to check a class imported by the Project that is neither
+     * its own nor on the server's classpath, and to take or restore a snapshot.
+     * @param dependencyClassIndex
+     * @param dependencies The Project's direct dependencies
+     */
+    void setDependencies( final DependencyClassIndex dependencyClassIndex,
+                          final List<Dependency> dependencies ) {
+        this.dependencyClassIndex = dependencyClassIndex;
+        this.dependencies = new ArrayList<Dependency>( dependencies );
+    }
+
     public boolean isBuilt() {
-        return kieBuilder != null;
+        return kieBuilder != null || restoredKieModule != null;
+    }
+
+    //Incremental builds need a KieBuilder, which a Builder restored from a snapshot does not have
+    private void ensureKieBuilder() {
+        if ( kieBuilder == null ) {
+            doBuild();
+        }
+    }
+
+    /**
+     * Take a snapshot of the Builder following a full build, from which an equivalent Builder can be restored.
+     * @param results The results of the full build
+     * @return The snapshot, or null if the Builder has not been compiled since it was restored from a snapshot
+     */
+    public BuildSnapshot createSnapshot( final BuildResults results ) {
+        if ( kieBuilder == null ) {
+            return null;
+        }
+        final List<BuildSnapshot.Message> messages = new ArrayList<BuildSnapshot.Message>();
+        for ( BuildMessage message : results.getMessages() ) {
+            String resource = null;
+            if ( message.getPath() != null ) {
+                final String uri = message.getPath().toURI();
+                if ( uri.startsWith( projectPrefix ) && uri.length() > projectPrefix.length() ) {
+                    resource = uri.substring( projectPrefix.length() + 1 );
+                }
+            }
+            messages.add( new BuildSnapshot.Message( message.getLevel().name(),
+                                                     message.getId(),
+                                                     resource,
+                                                     message.getLine(),
+                                                     message.getColumn(),
+                                                     message.getText() ) );
+        }
+        final InternalKieModule kieModule = (InternalKieModule) ( (InternalKieBuilder) kieBuilder ).getKieModuleIgnoringErrors();
+        return new BuildSnapshot( String.valueOf( gav ),
+                                  resourceDigests,
+                                  getDependencyDigests(),
+                                  javaResources,
+                                  kieModule.getBytes(),
+                                  messages );
+    }
+
+    /**
+     * Restore the outcome of a full build from a snapshot, if the content of the Project's resources, and the JARs
+     * of its direct dependencies, match those when the snapshot was taken. The Builder is then considered built
+     * without being compiled.
+     * @param snapshot
+     * @return true if the snapshot was restored
+     */
+    public boolean restore( final BuildSnapshot snapshot ) {
+        PortablePreconditions.checkNotNull( "snapshot",
+                                            snapshot );
+        if ( isBuilt() ) {
+            return false;
+        }
+        if ( !String.valueOf( gav ).equals( snapshot.getGAV() ) ) {
+            return false;
+        }
+        if ( !resourceDigests.equals( snapshot.getResourceDigests() ) ) {
+            return false;
+        }
+        //A dependency, such as another Project's KieModule, may have been re-deployed since the snapshot was taken
+        if ( !getDependencyDigests().equals( snapshot.getDependencyDigests() ) ) {
+            return false;
+        }
+
+        final List<BuildMessage> messages = new ArrayList<BuildMessage>();
+        boolean hasRestoredErrors = false;
+        for ( BuildSnapshot.Message message : snapshot.getMessages() ) {
+            final BuildMessage m = new BuildMessage();
+            m.setLevel( BuildMessage.Level.valueOf( message.getLevel() ) );
+            m.setId( message.getId() );
+            m.setLine( message.getLine() );
+            m.setColumn( message.getColumn() );
+            m.setText( message.getText() );
+            if ( message.getResource() != null ) {
+                m.setPath( handles.get( message.getResource() ) );
+            }
+            messages.add( m );
+            hasRestoredErrors = hasRestoredErrors || m.getLevel() == BuildMessage.Level.ERROR;
+        }
+
+        restoredKieModule = kieServices.getRepository().addKieModule( kieServices.getResources().newByteArrayResource( snapshot.getKieModuleBytes() ) );
+        restoredMessages = messages;
+        javaResources.addAll( snapshot.getJavaResources() );
+
+        //The rule of hasErrors(), applied to the messages of the full build from which the snapshot was taken
+        if ( !hasRestoredErrors ) {
+            setKieContainer( kieServices.newKieContainer( restoredKieModule.getReleaseId() ) );
+        }
+        return true;
+    }
+
+    //Identify the JAR of each direct dependency by its size and modification time, which change when it is
+    //re-deployed, rather than reading its content
+    private Map<String, String> getDependencyDigests() {
+        final Map<String, String> dependencyDigests = new HashMap<String, String>();
+        for ( Dependency dependency : dependencies ) {
+            final String dependencyGAV = DependencyClassIndex.toString( dependency );
+            final File file = DependencyClassIndex.resolveArtifact( dependencyGAV );
+            dependencyDigests.put( dependencyGAV,
+                                   ( file == null ? "" : file.length() + ":" + file.lastModified() ) );
+        }
+        return dependencyDigests;
+    }
+
+    /**
+     * Number of resources held by the Builder. Can be read whilst the Builder is in use.
+     * @return
+     */
+    public int getResourceCount() {
+        return resourceCount;
+    }
+
+    /**
+     * Total size, in bytes, of the resources held by the Builder. Can be read whilst the Builder is in use.
+     * @return
+     */
+    public long getResourceBytes() {
+        return resourceBytes;
+    }
+
+    /**
+     * Release the KieContainer held by the Builder. It is re-created by the next full build.
+     */
+    public void release() {
+        setKieContainer( null );
     }
 
     private void visitPaths( final DirectoryStream<org.kie.commons.java.nio.file.Path> directoryStream ) {
@@ -399,11 +892,11 @@ public class Builder {
                 if ( !dotFileFilter.accept( path ) ) {
 
                     final String destinationPath = path.toUri().toString().substring( projectPrefix.length() + 1 );
-                    final InputStream is = ioService.newInputStream( path );
-                    final BufferedInputStream bis = new BufferedInputStream( is );
+                    final byte[] content = readAllBytes( path );
 
-                    kieFileSystem.write( destinationPath,
-                                         KieServices.Factory.get().getResources().newInputStreamResource( bis ) );
+                    writeToFileSystem( destinationPath,
+                                       content,
+                                       digest( content ) );
 
                     //Java classes are handled by KIE so we can safely post-process them here
                     addJavaClass( path );
@@ -421,6 +914,233 @@ public class Builder {
         }
     }
 
+    //Directories are split into one task per child so sub-trees are read concurrently. Resources are read
+    //(and their meta-data resolved) by the worker threads but are only added to the Builder's state by the
+    //calling thread, so ingesting needs no locking. (handles and javaResources are concurrent collections
+    //because they are also read by threads that do not hold the Builder's lock.)
+    private void visitPaths( final ExecutorService executor ) {
+        final BlockingQueue<LoadedResource> loadedResources = new LinkedBlockingQueue<LoadedResource>();
+        final AtomicInteger pendingTasks = new AtomicInteger( 1 );
+        final AtomicBoolean cancelled = new AtomicBoolean( false );
+        executor.execute( new ResourceLoader( moduleDirectory,
+                                              executor,
+                                              loadedResources,
+                                              pendingTasks,
+                                              cancelled ) );
+
+        try {
+            LoadedResource loadedResource = loadedResources.take();
+            while ( loadedResource != LoadedResource.END ) {
+                if ( loadedResource.error != null ) {
+                    cancelled.set( true );
+                    if ( loadedResource.error instanceof RuntimeException ) {
+                        throw (RuntimeException) loadedResource.error;
+                    }
+                    throw new RuntimeException( loadedResource.error );
+                }
+
+                writeToFileSystem( loadedResource.destinationPath,
+                                   loadedResource.content,
+                                   loadedResource.digest );
+                if ( loadedResource.fullyQualifiedClassName != null ) {
+                    javaResources.add( loadedResource.fullyQualifiedClassName );
+                }
+                handles.put( loadedResource.destinationPath,
+                             loadedResource.handle );
+                if ( loadedResource.validator != null ) {
+                    nonKieResourceValidationHelpers.put( loadedResource.path,
+                                                         loadedResource.validator );
+                }
+                loadedResource = loadedResources.take();
+            }
+
+        } catch ( InterruptedException ie ) {
+            cancelled.set( true );
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted whilst reading Project resources.",
+                                             ie );
+        }
+    }
+
+    private void writeToFileSystem( final String destinationPath,
+                                    final byte[] content,
+                                    final String digest ) {
+        kieFileSystem.write( destinationPath,
+                             content );
+        resourceDigests.put( destinationPath,
+                             digest );
+        final Integer previousSize = resourceSizes.put( destinationPath,
+                                                        content.length );
+        resourceBytes = resourceBytes + content.length - ( previousSize == null ? 0 : previousSize );
+        resourceCount = resourceSizes.size();
+    }
+
+    private void deleteFromFileSystem( final String destinationPath ) {
+        kieFileSystem.delete( destinationPath );
+        resourceDigests.remove( destinationPath );
+        final Integer previousSize = resourceSizes.remove( destinationPath );
+        resourceBytes = resourceBytes - ( previousSize == null ? 0 : previousSize );
+        resourceCount = resourceSizes.size();
+    }
+
+    //Read a resource, returning null if it does not exist
+    private byte[] readAllBytesIfExists( final Path path ) {
+        try {
+            return readAllBytes( path );
+        } catch ( NoSuchFileException nsfe ) {
+            return null;
+        }
+    }
+
+    private byte[] readAllBytes( final Path path ) {
+        final InputStream is = ioService.newInputStream( path );
+        try {
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[ 4096 ];
+            int read;
+            while ( ( read = is.read( buffer ) ) != -1 ) {
+                os.write( buffer,
+                          0,
+                          read );
+            }
+            return os.toByteArray();
+
+        } catch ( IOException ioe ) {
+            throw new IllegalStateException( "Unable to read " + path.toUri(),
+                                             ioe );
+        } finally {
+            try {
+                is.close();
+            } catch ( IOException ignore ) {
+                //Nothing to do
+            }
+        }
+    }
+
+    private static String digest( final byte[] content ) {
+        try {
+            final MessageDigest md = MessageDigest.getInstance( "SHA-1" );
+            final byte[] digest = md.digest( content );
+            final StringBuilder sb = new StringBuilder( digest.length * 2 );
+            for ( byte b : digest ) {
+                sb.append( Character.forDigit( ( b >> 4 ) & 0xF,
+                                               16 ) );
+                sb.append( Character.forDigit( b & 0xF,
+                                               16 ) );
+            }
+            return sb.toString();
+
+        } catch ( NoSuchAlgorithmException nsae ) {
+            //SHA-1 is required to be supported by every Java platform
+            throw new IllegalStateException( nsae );
+        }
+    }
+
+    private class ResourceLoader implements Runnable {
+
+        private final Path path;
+        private final ExecutorService executor;
+        private final BlockingQueue<LoadedResource> loadedResources;
+        private final AtomicInteger pendingTasks;
+        private final AtomicBoolean cancelled;
+
+        private ResourceLoader( final Path path,
+                                final ExecutorService executor,
+                                final BlockingQueue<LoadedResource> loadedResources,
+                                final AtomicInteger pendingTasks,
+                                final AtomicBoolean cancelled ) {
+            this.path = path;
+            this.executor = executor;
+            this.loadedResources = loadedResources;
+            this.pendingTasks = pendingTasks;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if ( cancelled.get() ) {
+                    return;
+                }
+                if ( Files.isDirectory( path ) ) {
+                    for ( final Path child : Files.newDirectoryStream( path ) ) {
+                        pendingTasks.incrementAndGet();
+                        try {
+                            executor.execute( new ResourceLoader( child,
+                                                                  executor,
+                                                                  loadedResources,
+                                                                  pendingTasks,
+                                                                  cancelled ) );
+                        } catch ( RuntimeException e ) {
+                            pendingTasks.decrementAndGet();
+                            throw e;
+                        }
+                    }
+
+                } else if ( !dotFileFilter.accept( path ) ) {
+                    final LoadedResource loadedResource = new LoadedResource( path );
+                    loadedResource.destinationPath = path.toUri().toString().substring( projectPrefix.length() + 1 );
+                    loadedResource.content = readAllBytes( path );
+                    loadedResource.digest = digest( loadedResource.content );
+                    loadedResource.handle = paths.convert( path );
+                    if ( javaResourceFilter.accept( path ) ) {
+                        loadedResource.fullyQualifiedClassName = getFullyQualifiedClassName( path );
+                    }
+                    loadedResource.validator = getBuildValidationHelper( path );
+                    loadedResources.add( loadedResource );
+                }
+
+            } catch ( Throwable t ) {
+                final LoadedResource failure = new LoadedResource( path );
+                failure.error = t;
+                loadedResources.add( failure );
+
+            } finally {
+                if ( pendingTasks.decrementAndGet() == 0 ) {
+                    loadedResources.add( LoadedResource.END );
+                }
+            }
+        }
+    }
+
+    private static class ResolvedResourceChange {
+
+        private final ChangeType type;
+        private final Path resource;
+        private final org.uberfire.backend.vfs.Path handle;
+        private final String destinationPath;
+        private String fullyQualifiedClassName;
+
+        private ResolvedResourceChange( final ChangeType type,
+                                        final Path resource,
+                                        final org.uberfire.backend.vfs.Path handle,
+                                        final String destinationPath ) {
+            this.type = type;
+            this.resource = resource;
+            this.handle = handle;
+            this.destinationPath = destinationPath;
+        }
+    }
+
+    private static class LoadedResource {
+
+        //Marker added once all resources have been read
+        private static final LoadedResource END = new LoadedResource( null );
+
+        private final Path path;
+        private String destinationPath;
+        private byte[] content;
+        private String digest;
+        private org.uberfire.backend.vfs.Path handle;
+        private String fullyQualifiedClassName;
+        private BuildValidationHelper validator;
+        private Throwable error;
+
+        private LoadedResource( final Path path ) {
+            this.path = path;
+        }
+    }
+
     private BuildResults convertMessages( final Results kieBuildResults ) {
         final BuildResults results = new BuildResults( gav );
 
@@ -490,6 +1210,29 @@ public class Builder {
         return m;
     }
 
+    //Check whether a class is available, from the Project, its dependencies or the server, without loading it.
+    //Nested classes can be imported by either their canonical or binary name. Dependencies are checked last, as
+    //they are resolved on first use.
+    private boolean isClassAvailable( final String type ) {
+        String name = type;
+        while ( true ) {
+            if ( javaResources.contains( name ) || ClassPathIndex.contains( name ) || isDependencyClass( name ) ) {
+                return true;
+            }
+            final int index = name.lastIndexOf( '.' );
+            if ( index < 0 ) {
+                return false;
+            }
+            name = name.substring( 0,
+                                   index ) + "$" + name.substring( index + 1 );
+        }
+    }
+
+    private boolean isDependencyClass( final String binaryName ) {
+        return dependencyClassIndex != null && dependencyClassIndex.contains( dependencies,
+                                                                              binaryName );
+    }
+
     private BuildMessage makeMessage( final String prefix,
                                       final Exception e ) {
         final BuildMessage buildMessage = new BuildMessage();
@@ -521,7 +1264,26 @@ public class Builder {
     private String getFullyQualifiedClassName( final Path path ) {
         final Package pkg = projectService.resolvePackage( paths.convert( path,
                                                                           false ) );
-        final String packageName = pkg.getPackageName();
+        return getFullyQualifiedClassName( path,
+                                           pkg.getPackageName() );
+    }
+
+    //Resolve the package of the Java resource's directory, unless already resolved
+    private String getFullyQualifiedClassName( final Path path,
+                                               final Map<String, String> packageNames ) {
+        final String directory = path.getParent().toUri().toString();
+        if ( !packageNames.containsKey( directory ) ) {
+            final Package pkg = projectService.resolvePackage( paths.convert( path,
+                                                                              false ) );
+            packageNames.put( directory,
+                              pkg.getPackageName() );
+        }
+        return getFullyQualifiedClassName( path,
+                                           packageNames.get( directory ) );
+    }
+
+    private String getFullyQualifiedClassName( final Path path,
+                                               final String packageName ) {
         if ( packageName == null ) {
             return null;
         }
@@ -551,12 +1313,7 @@ public class Builder {
     }
 
     private BuildValidationHelper getBuildValidationHelper( final Path resource ) {
-        for ( BuildValidationHelper validator : buildValidationHelpers ) {
-            if ( validator.accepts( paths.convert( resource ) ) ) {
-                return validator;
-            }
-        }
-        return null;
+        return buildValidationHelpers.getBuildValidationHelper( resource );
     }
 
 }
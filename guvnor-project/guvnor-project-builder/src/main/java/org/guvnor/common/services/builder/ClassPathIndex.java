@@ -0,0 +1,48 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Answers whether classes are available on the server's classpath without loading, and hence initialising, them.
+ * Answers are cached as the server's classpath does not change whilst the application is deployed.
+ */
+final class ClassPathIndex {
+
+    private static final ConcurrentMap<String, Boolean> classes = new ConcurrentHashMap<String, Boolean>();
+
+    private ClassPathIndex() {
+    }
+
+    /**
+     * @param binaryName Binary name of the class (e.g. "java.util.Map$Entry")
+     * @return true if the class is available
+     */
+    static boolean contains( final String binaryName ) {
+        Boolean isAvailable = classes.get( binaryName );
+        if ( isAvailable == null ) {
+            final ClassLoader classLoader = ClassPathIndex.class.getClassLoader();
+            isAvailable = ( classLoader.getResource( binaryName.replace( '.',
+                                                                         '/' ) + ".class" ) != null );
+            classes.put( binaryName,
+                         isAvailable );
+        }
+        return isAvailable;
+    }
+
+}
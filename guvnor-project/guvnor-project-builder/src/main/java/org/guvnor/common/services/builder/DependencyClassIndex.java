@@ -0,0 +1,200 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import javax.enterprise.context.ApplicationScoped;
+
+import org.guvnor.common.services.project.model.Dependency;
+import org.guvnor.common.services.project.model.GAV;
+import org.kie.scanner.DependencyDescriptor;
+import org.kie.scanner.MavenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.aether.artifact.Artifact;
+
+/**
+ * Names of the classes in the JARs of Projects' dependencies, so the classes listed in a Project's project.imports
+ * can be checked without loading them. A JAR is only resolved and indexed when a Project imports a class that is
+ * neither its own nor on the server's classpath; its index is then shared by all Projects. JARs that have changed
+ * since they were indexed, such as re-deployed SNAPSHOTs, are re-indexed. The least recently used indexes are
+ * discarded once more than 100 JARs are indexed.
+ */
+@ApplicationScoped
+public class DependencyClassIndex {
+
+    private static final String CLASS_FILE_EXTENSION = ".class";
+
+    private static final int MAX_ENTRIES = 100;
+
+    private static final Logger log = LoggerFactory.getLogger( DependencyClassIndex.class );
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>( 16,
+                                                                                 0.75f,
+                                                                                 true ) {
+        @Override
+        protected boolean removeEldestEntry( final Map.Entry<String, Entry> eldest ) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Check whether a class is contained in the JAR of any of the given dependencies, or their transitive dependencies
+     * @param dependencies A Project's direct dependencies
+     * @param binaryName Binary name of the class (e.g. "org.example.Outer$Inner")
+     * @return true if the class is available
+     */
+    public boolean contains( final List<Dependency> dependencies,
+                             final String binaryName ) {
+        final Set<String> visited = new HashSet<String>();
+        for ( Dependency dependency : dependencies ) {
+            final String gav = toString( dependency );
+            if ( !visited.add( gav ) ) {
+                continue;
+            }
+            final Entry entry = getEntry( gav );
+            if ( entry.contains( binaryName ) ) {
+                return true;
+            }
+            for ( String transitiveGav : entry.getTransitiveDependencies() ) {
+                if ( visited.add( transitiveGav ) && getEntry( transitiveGav ).contains( binaryName ) ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Entry getEntry( final String gav ) {
+        synchronized ( entries ) {
+            Entry entry = entries.get( gav );
+            if ( entry == null ) {
+                entry = new Entry( gav );
+                entries.put( gav,
+                             entry );
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Resolve the JAR of an artifact through kie-ci's MavenRepository
+     * @param gav GAV of the artifact, as "groupId:artifactId:version"
+     * @return The JAR, or null if the artifact cannot be resolved
+     */
+    static File resolveArtifact( final String gav ) {
+        try {
+            final Artifact resolved = MavenRepository.getMavenRepository().resolveArtifact( gav );
+            final File file = ( resolved == null ? null : resolved.getFile() );
+            return ( file == null || !file.isFile() ? null : file );
+        } catch ( Exception e ) {
+            log.warn( "Unable to resolve dependency '" + gav + "': " + e.getMessage() );
+            return null;
+        }
+    }
+
+    static String toString( final GAV gav ) {
+        return gav.getGroupId() + ":" + gav.getArtifactId() + ":" + gav.getVersion();
+    }
+
+    //The classes in, and the transitive dependencies of, a single artifact. Each is resolved on first use, outside
+    //the lock on the index so Projects with other dependencies are not blocked.
+    private static class Entry {
+
+        private final String gav;
+        private File file;
+        private long lastModified;
+        private Set<String> classNames;
+        private List<String> transitiveDependencies;
+
+        private Entry( final String gav ) {
+            this.gav = gav;
+        }
+
+        private synchronized boolean contains( final String binaryName ) {
+            if ( classNames == null || file.lastModified() != lastModified ) {
+                index();
+            }
+            return classNames != null && classNames.contains( binaryName );
+        }
+
+        //Artifacts that cannot be resolved are not indexed, and are resolved again when next checked
+        private void index() {
+            classNames = null;
+            file = resolveArtifact( gav );
+            if ( file == null ) {
+                return;
+            }
+            lastModified = file.lastModified();
+            try {
+                classNames = scan( file );
+            } catch ( IOException ioe ) {
+                log.warn( "Unable to index dependency '" + gav + "': " + ioe.getMessage() );
+            }
+        }
+
+        private synchronized List<String> getTransitiveDependencies() {
+            if ( transitiveDependencies != null ) {
+                return transitiveDependencies;
+            }
+            final List<String> gavs = new ArrayList<String>();
+            try {
+                final List<DependencyDescriptor> descriptors = MavenRepository.getMavenRepository().getArtifactDependecies( gav );
+                if ( descriptors != null ) {
+                    for ( DependencyDescriptor descriptor : descriptors ) {
+                        gavs.add( descriptor.getGroupId() + ":" + descriptor.getArtifactId() + ":" + descriptor.getVersion() );
+                    }
+                }
+                transitiveDependencies = Collections.unmodifiableList( gavs );
+            } catch ( Exception e ) {
+                log.warn( "Unable to resolve dependencies of '" + gav + "': " + e.getMessage() );
+                return gavs;
+            }
+            return transitiveDependencies;
+        }
+    }
+
+    private static Set<String> scan( final File file ) throws IOException {
+        final Set<String> classNames = new HashSet<String>();
+        final JarFile jarFile = new JarFile( file );
+        try {
+            final Enumeration<JarEntry> jarEntries = jarFile.entries();
+            while ( jarEntries.hasMoreElements() ) {
+                final String name = jarEntries.nextElement().getName();
+                if ( name.endsWith( CLASS_FILE_EXTENSION ) ) {
+                    classNames.add( name.substring( 0,
+                                                    name.length() - CLASS_FILE_EXTENSION.length() ).replace( '/',
+                                                                                                             '.' ) );
+                }
+            }
+        } finally {
+            jarFile.close();
+        }
+        return classNames;
+    }
+
+}
@@ -18,7 +18,16 @@ package org.guvnor.common.services.builder;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.enterprise.inject.Any;
@@ -28,22 +37,47 @@ import javax.inject.Named;
 
 import org.guvnor.common.services.backend.cache.LRUCache;
 import org.guvnor.common.services.project.builder.events.InvalidateDMOProjectCacheEvent;
+import org.guvnor.common.services.project.builder.model.BuildMetrics;
 import org.guvnor.common.services.project.builder.service.BuildValidationHelper;
 import org.guvnor.common.services.project.model.POM;
 import org.guvnor.common.services.project.model.Project;
 import org.guvnor.common.services.project.service.POMService;
 import org.guvnor.common.services.project.service.ProjectService;
+import org.guvnor.common.services.shared.config.AppConfigService;
 import org.kie.commons.io.IOService;
 import org.kie.commons.validation.PortablePreconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.uberfire.backend.server.util.Paths;
 import org.uberfire.backend.vfs.Path;
 
 /**
- * A simple LRU cache for Builders
+ * A LRU cache for Builders. Builders are evicted when either the number of cached Builders or their estimated
+ * heap usage exceeds the configured limits, or when they have not been used for the configured idle time.
  */
 @ApplicationScoped
 public class LRUBuilderCache extends LRUCache<Project, Builder> {
 
+    private static final String PARALLELISM_PROPERTY_NAME = "build.parallelism";
+
+    private static final String MAX_ENTRIES_PROPERTY_NAME = "build.cache-max-entries";
+
+    private static final String HEAP_BUDGET_PROPERTY_NAME = "build.cache-heap-budget";
+
+    private static final String IDLE_EXPIRY_PROPERTY_NAME = "build.cache-idle-expiry";
+
+    private static final int DEFAULT_MAX_ENTRIES = 20;
+
+    //Rough estimate of the heap used by a Builder: its source, the compiled KieModule and KieContainer are
+    //assumed to need a multiple of the source size plus a fixed overhead per resource
+    private static final long HEAP_BYTES_PER_SOURCE_BYTE = 8;
+    private static final long HEAP_BYTES_PER_RESOURCE = 16 * 1024;
+
+    //Number of locks over which Projects are striped
+    private static final int LOCK_STRIPES = 64;
+
+    private static final Logger log = LoggerFactory.getLogger( LRUBuilderCache.class );
+
     @Inject
     private Paths paths;
 
@@ -57,13 +91,64 @@ public class LRUBuilderCache extends LRUCache<Project, Builder> {
     @Named("ioStrategy")
     private IOService ioService;
 
+    @Inject
+    private AppConfigService appConfigService;
+
+    @Inject
+    private BuildSnapshotStore snapshotStore;
+
+    @Inject
+    private BuildMetricsCollector metrics;
+
+    @Inject
+    private DependencyClassIndex dependencyClassIndex;
+
+    @Inject
+    private ProjectDependencyGraph dependencyGraph;
+
     @Inject
     @Any
     private Instance<BuildValidationHelper> anyValidators;
 
     private final List<BuildValidationHelper> validators = new ArrayList<BuildValidationHelper>();
 
+    //Shared by all Builders to read Project resources concurrently
+    private ExecutorService builderExecutor;
+
+    private int maxEntries;
+    private long heapBudget;
+    private long idleExpiry;
+    private ScheduledExecutorService idleExpiryExecutor;
+    private final Map<Project, Long> lastAccessTimes = new ConcurrentHashMap<Project, Long>();
+
+    //Serialise creation of a Project's Builder, and operations on it, without blocking other Projects
+    private final Lock[] creationLocks = makeLocks();
+    private final Lock[] buildLocks = makeLocks();
+
+    private static Lock[] makeLocks() {
+        final Lock[] locks = new Lock[ LOCK_STRIPES ];
+        for ( int i = 0; i < locks.length; i++ ) {
+            locks[ i ] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    private static Lock getStripe( final Lock[] locks,
+                                   final Project project ) {
+        //Spread the hash as Path hashCodes are not well distributed in the lower bits
+        int h = project.hashCode();
+        h ^= ( h >>> 20 ) ^ ( h >>> 12 );
+        h ^= ( h >>> 7 ) ^ ( h >>> 4 );
+        return locks[ ( h & 0x7fffffff ) % locks.length ];
+    }
+
     @PostConstruct
+    public void setup() {
+        setupValidators();
+        setupBuilderExecutor();
+        setupEviction();
+    }
+
     public void setupValidators() {
         final Iterator<BuildValidationHelper> itr = anyValidators.iterator();
         while ( itr.hasNext() ) {
@@ -71,7 +156,125 @@ public class LRUBuilderCache extends LRUCache<Project, Builder> {
         }
     }
 
-    public synchronized void invalidateProjectCache( @Observes final InvalidateDMOProjectCacheEvent event ) {
+    private void setupBuilderExecutor() {
+        final int parallelism = getParallelism();
+        if ( parallelism > 1 ) {
+            builderExecutor = Executors.newFixedThreadPool( parallelism );
+        }
+    }
+
+    //Number of threads used by Builders. Defaults to the number of processors; a value of 1 disables parallelism
+    private int getParallelism() {
+        return (int) BuildPreferences.getLong( appConfigService,
+                                               PARALLELISM_PROPERTY_NAME,
+                                               Runtime.getRuntime().availableProcessors(),
+                                               1 );
+    }
+
+    //The heap budget is in megabytes and defaults to a quarter of the maximum heap. Idle expiry is in minutes and
+    //is disabled by default.
+    private void setupEviction() {
+        maxEntries = (int) BuildPreferences.getLong( appConfigService,
+                                                     MAX_ENTRIES_PROPERTY_NAME,
+                                                     DEFAULT_MAX_ENTRIES );
+        heapBudget = BuildPreferences.getLong( appConfigService,
+                                               HEAP_BUDGET_PROPERTY_NAME,
+                                               Runtime.getRuntime().maxMemory() / 4 / ( 1024 * 1024 ) ) * 1024 * 1024;
+        idleExpiry = TimeUnit.MINUTES.toMillis( BuildPreferences.getLong( appConfigService,
+                                                                          IDLE_EXPIRY_PROPERTY_NAME,
+                                                                          0 ) );
+        if ( idleExpiry > 0 ) {
+            final long period = Math.min( idleExpiry,
+                                          TimeUnit.MINUTES.toMillis( 1 ) );
+            idleExpiryExecutor = Executors.newSingleThreadScheduledExecutor();
+            idleExpiryExecutor.scheduleWithFixedDelay( new Runnable() {
+                                                           @Override
+                                                           public void run() {
+                                                               evictIdleBuilders();
+                                                           }
+                                                       },
+                                                       period,
+                                                       period,
+                                                       TimeUnit.MILLISECONDS );
+        }
+    }
+
+    @Override
+    protected boolean isOverCapacity( final Map<Project, Builder> entries ) {
+        if ( entries.size() > maxEntries ) {
+            return true;
+        }
+        long weight = 0;
+        for ( Builder builder : entries.values() ) {
+            weight = weight + getWeight( builder );
+        }
+        return weight > heapBudget;
+    }
+
+    private long getWeight( final Builder builder ) {
+        return builder.getResourceBytes() * HEAP_BYTES_PER_SOURCE_BYTE + builder.getResourceCount() * HEAP_BYTES_PER_RESOURCE;
+    }
+
+    @Override
+    protected void onEviction( final Project project,
+                               final Builder builder ) {
+        lastAccessTimes.remove( project );
+        metrics.increment( BuildMetrics.COUNTER_CACHE_EVICTIONS );
+        log.info( "Evicting Builder for " + project.getRootPath().toURI() + " (" + builder.getResourceCount() + " resources)." );
+
+        //Builders still in use are left to the garbage collector
+        final Lock lock = getBuildLock( project );
+        if ( lock.tryLock() ) {
+            try {
+                builder.release();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    //Only Projects with a cached Builder are recorded, so a failed creation leaves nothing behind
+    private void recordAccess( final Project project ) {
+        lastAccessTimes.put( project,
+                             System.currentTimeMillis() );
+    }
+
+    private void evictIdleBuilders() {
+        try {
+            final long expiryTime = System.currentTimeMillis() - idleExpiry;
+            for ( Project project : new ArrayList<Project>( getKeys() ) ) {
+                final Long lastAccessTime = lastAccessTimes.get( project );
+                if ( lastAccessTime != null && lastAccessTime < expiryTime ) {
+                    evictEntry( project );
+                }
+            }
+        } catch ( Exception e ) {
+            log.error( e.getMessage(),
+                       e );
+        }
+    }
+
+    @PreDestroy
+    public void destroyBuilderExecutor() {
+        if ( idleExpiryExecutor != null ) {
+            idleExpiryExecutor.shutdownNow();
+        }
+        if ( builderExecutor == null ) {
+            return;
+        }
+        try {
+            builderExecutor.shutdown();
+            if ( !builderExecutor.awaitTermination( 10,
+                                                    TimeUnit.SECONDS ) ) {
+                builderExecutor.shutdownNow();
+            }
+        } catch ( InterruptedException e ) {
+            builderExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void invalidateProjectCache( @Observes final InvalidateDMOProjectCacheEvent event ) {
         PortablePreconditions.checkNotNull( "event",
                                             event );
         final Path resourcePath = event.getResourcePath();
@@ -79,25 +282,94 @@ public class LRUBuilderCache extends LRUCache<Project, Builder> {
 
         //If resource was not within a Project there's nothing to invalidate
         if ( project != null ) {
-            invalidateCache( project );
+            //Wait for any Builder being created so it is not cached after invalidation
+            final Lock lock = getStripe( creationLocks,
+                                         project );
+            lock.lock();
+            try {
+                invalidateCache( project );
+                lastAccessTimes.remove( project );
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
-    public synchronized Builder assertBuilder( final Project project ) {
+    public Builder assertBuilder( final Project project ) {
+        //Builders already in the cache are returned without waiting for other Projects' Builders to be created
         Builder builder = getEntry( project );
-        if ( builder == null ) {
-            final Path pathToPom = project.getPomXMLPath();
-            final POM pom = pomService.load( pathToPom );
-            builder = new Builder( paths.convert( project.getRootPath() ),
-                                   pom.getGav(),
-                                   paths,
-                                   ioService,
-                                   projectService,
-                                   validators );
-            setEntry( project,
-                      builder );
+        if ( builder != null ) {
+            metrics.increment( BuildMetrics.COUNTER_CACHE_HITS );
+            recordAccess( project );
+            return builder;
+        }
+
+        final Lock lock = getStripe( creationLocks,
+                                     project );
+        lock.lock();
+        try {
+            builder = getEntry( project );
+            if ( builder == null ) {
+                metrics.increment( BuildMetrics.COUNTER_CACHE_MISSES );
+                final Path pathToPom = project.getPomXMLPath();
+                final POM pom = pomService.load( pathToPom );
+                dependencyGraph.update( project,
+                                        pom );
+                final long startTime = System.nanoTime();
+                builder = new Builder( paths.convert( project.getRootPath() ),
+                                       pom.getGav(),
+                                       paths,
+                                       ioService,
+                                       projectService,
+                                       validators,
+                                       builderExecutor );
+                metrics.recordTime( BuildMetrics.TIMER_INGESTION,
+                                    System.nanoTime() - startTime );
+                builder.setDependencies( dependencyClassIndex,
+                                         pom.getDependencies() );
+
+                //Avoid compiling the Project if it has not changed since it was last built
+                final BuildSnapshot snapshot = snapshotStore.load( project,
+                                                                   pom.getGav() );
+                if ( snapshot != null && builder.restore( snapshot ) ) {
+                    log.info( "Builder for " + project.getRootPath().toURI() + " restored from build snapshot." );
+                }
+
+                setEntry( project,
+                          builder );
+            } else {
+                metrics.increment( BuildMetrics.COUNTER_CACHE_HITS );
+            }
+            recordAccess( project );
+            return builder;
+
+        } finally {
+            lock.unlock();
         }
-        return builder;
+    }
+
+    /**
+     * Return a Project's cached Builder, without creating one if none is cached
+     * @param project
+     * @return null if the Project has no cached Builder
+     */
+    public Builder getBuilderIfPresent( final Project project ) {
+        PortablePreconditions.checkNotNull( "project",
+                                            project );
+        return getEntry( project );
+    }
+
+    /**
+     * Return the Lock that must be held whilst operating on a Project's Builder. Builders are not thread-safe.
+     * Projects are striped over a fixed number of locks, so different Projects can be built concurrently.
+     * @param project
+     * @return
+     */
+    public Lock getBuildLock( final Project project ) {
+        PortablePreconditions.checkNotNull( "project",
+                                            project );
+        return getStripe( buildLocks,
+                          project );
     }
 
 }
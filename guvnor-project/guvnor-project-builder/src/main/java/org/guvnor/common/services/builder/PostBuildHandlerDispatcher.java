@@ -0,0 +1,256 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+
+import org.guvnor.common.services.project.builder.model.BuildMessage;
+import org.guvnor.common.services.project.builder.model.BuildMetrics;
+import org.guvnor.common.services.project.builder.model.BuildResults;
+import org.guvnor.common.services.project.builder.service.PostBuildHandler;
+import org.guvnor.common.services.shared.config.AppConfigService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs PostBuildHandlers concurrently on a dedicated executor, so a slow handler does not delay the others. Each
+ * handler is given the time set by the "build.post-build-handler-timeout" preference, in seconds, to complete;
+ * handlers that take longer are interrupted. Each handler is passed its own copy of the BuildResults; messages
+ * added by handlers that complete in time are then added to the original. If the "build.post-build-handler-async"
+ * preference is "true" callers do not wait for the handlers to complete, and messages added by handlers are logged
+ * and discarded.
+ * <p>
+ * At most "build.post-build-handler-threads" handlers run at once. Up to QUEUE_CAPACITY further handlers, and as many
+ * asynchronous dispatches, wait for a thread; any more are not run, and a warning is logged. A handler that ignores
+ * interruption keeps its thread after timing out.
+ * <p>
+ * Handlers run on the dispatcher's threads, so no CDI request or session context is active whilst they run. Handlers
+ * must not depend upon @RequestScoped or @SessionScoped beans.
+ */
+@ApplicationScoped
+public class PostBuildHandlerDispatcher {
+
+    private static final String TIMEOUT_PROPERTY_NAME = "build.post-build-handler-timeout";
+
+    private static final String ASYNC_PROPERTY_NAME = "build.post-build-handler-async";
+
+    private static final String THREADS_PROPERTY_NAME = "build.post-build-handler-threads";
+
+    private static final long DEFAULT_TIMEOUT = 30;
+
+    private static final int DEFAULT_THREADS = Math.max( 2,
+                                                         Runtime.getRuntime().availableProcessors() );
+
+    private static final int QUEUE_CAPACITY = 100;
+
+    private static final Logger log = LoggerFactory.getLogger( PostBuildHandlerDispatcher.class );
+
+    @Inject
+    private AppConfigService appConfigService;
+
+    @Inject
+    private BuildMetricsCollector metrics;
+
+    @Inject
+    private Instance<PostBuildHandler> handlers;
+
+    private long timeout;
+    private boolean isAsync;
+    private ThreadPoolExecutor executor;
+
+    //Asynchronous dispatches wait for their handlers on a separate thread, so they never occupy the threads that
+    //the handlers need
+    private ThreadPoolExecutor asyncExecutor;
+
+    @PostConstruct
+    public void setup() {
+        timeout = TimeUnit.SECONDS.toNanos( BuildPreferences.getLong( appConfigService,
+                                                                      TIMEOUT_PROPERTY_NAME,
+                                                                      DEFAULT_TIMEOUT,
+                                                                      1 ) );
+        isAsync = Boolean.parseBoolean( appConfigService.loadPreferences().get( ASYNC_PROPERTY_NAME ) );
+        executor = newExecutor( (int) BuildPreferences.getLong( appConfigService,
+                                                                THREADS_PROPERTY_NAME,
+                                                                DEFAULT_THREADS,
+                                                                1 ),
+                                "post-build-handler-" );
+        asyncExecutor = newExecutor( 1,
+                                     "post-build-dispatcher-" );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        asyncExecutor.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    //Excess tasks are rejected with a RejectedExecutionException once the queue is full
+    private static ThreadPoolExecutor newExecutor( final int threads,
+                                                   final String threadNamePrefix ) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor( threads,
+                                                                    threads,
+                                                                    60,
+                                                                    TimeUnit.SECONDS,
+                                                                    new LinkedBlockingQueue<Runnable>( QUEUE_CAPACITY ),
+                                                                    new ThreadFactory() {
+                                                                        private final AtomicInteger count = new AtomicInteger();
+
+                                                                        @Override
+                                                                        public Thread newThread( final Runnable runnable ) {
+                                                                            final Thread thread = new Thread( runnable,
+                                                                                                              threadNamePrefix + count.incrementAndGet() );
+                                                                            thread.setDaemon( true );
+                                                                            return thread;
+                                                                        }
+                                                                    } );
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
+    }
+
+    /**
+     * Pass the results of a build and deploy to all PostBuildHandlers. Unless handlers are dispatched
+     * asynchronously, this returns once every handler has completed or timed out.
+     * @param results
+     */
+    public void dispatch( final BuildResults results ) {
+        final List<PostBuildHandler> handlers = new ArrayList<PostBuildHandler>();
+        for ( PostBuildHandler handler : this.handlers ) {
+            handlers.add( handler );
+        }
+        if ( handlers.isEmpty() ) {
+            return;
+        }
+
+        if ( !isAsync ) {
+            process( handlers,
+                     results,
+                     true );
+            return;
+        }
+        try {
+            asyncExecutor.execute( new Runnable() {
+                @Override
+                public void run() {
+                    process( handlers,
+                             results,
+                             false );
+                }
+            } );
+        } catch ( RejectedExecutionException ree ) {
+            log.warn( "PostBuildHandlers not run: " + ree.getMessage() );
+        }
+    }
+
+    private void process( final List<PostBuildHandler> handlers,
+                          final BuildResults results,
+                          final boolean isMergeRequired ) {
+        final int messageCount = results.getMessages().size();
+        final List<BuildResults> handlerResults = new ArrayList<BuildResults>( handlers.size() );
+        final List<Future<?>> futures = new ArrayList<Future<?>>( handlers.size() );
+        for ( final PostBuildHandler handler : handlers ) {
+            final BuildResults copy = copy( results );
+            handlerResults.add( copy );
+            try {
+                futures.add( executor.submit( new Runnable() {
+                    @Override
+                    public void run() {
+                        final long startTime = System.nanoTime();
+                        try {
+                            handler.process( copy );
+                        } finally {
+                            metrics.recordTime( BuildMetrics.TIMER_POST_BUILD_HANDLER_PREFIX + handler.getClass().getName(),
+                                                System.nanoTime() - startTime );
+                        }
+                    }
+                } ) );
+            } catch ( RejectedExecutionException ree ) {
+                log.warn( "PostBuildHandler {} not run due to {}",
+                          handler,
+                          ree.getMessage() );
+                futures.add( null );
+            }
+        }
+
+        //All handlers started together, so each is given the same deadline
+        final long deadline = System.nanoTime() + timeout;
+        for ( int i = 0; i < futures.size(); i++ ) {
+            final Future<?> future = futures.get( i );
+            if ( future == null ) {
+                continue;
+            }
+            final PostBuildHandler handler = handlers.get( i );
+            try {
+                future.get( Math.max( 0,
+                                      deadline - System.nanoTime() ),
+                            TimeUnit.NANOSECONDS );
+                final List<BuildMessage> messages = handlerResults.get( i ).getMessages();
+                final List<BuildMessage> added = messages.subList( messageCount,
+                                                                   messages.size() );
+                if ( isMergeRequired ) {
+                    for ( BuildMessage message : added ) {
+                        results.addBuildMessage( message );
+                    }
+                } else {
+                    for ( BuildMessage message : added ) {
+                        log.warn( "PostBuildHandler {} message discarded, as handlers are dispatched asynchronously: {}",
+                                  handler,
+                                  message.getText() );
+                    }
+                }
+
+            } catch ( TimeoutException te ) {
+                future.cancel( true );
+                metrics.increment( BuildMetrics.COUNTER_POST_BUILD_HANDLER_TIMEOUTS );
+                log.warn( "PostBuildHandler {} did not complete within {} seconds",
+                          handler,
+                          TimeUnit.NANOSECONDS.toSeconds( timeout ) );
+
+            } catch ( ExecutionException ee ) {
+                log.warn( "PostBuildHandler {} failed due to {}",
+                          handler,
+                          ee.getCause().getMessage() );
+
+            } catch ( InterruptedException ie ) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private BuildResults copy( final BuildResults results ) {
+        final BuildResults copy = new BuildResults( results.getGAV() );
+        for ( BuildMessage message : results.getMessages() ) {
+            copy.addBuildMessage( message );
+        }
+        return copy;
+    }
+
+}
@@ -0,0 +1,452 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import javax.enterprise.event.Event;
+
+import org.guvnor.common.services.project.builder.model.BuildMetrics;
+import org.guvnor.common.services.project.builder.model.BuildResults;
+import org.guvnor.common.services.project.builder.model.IncrementalBuildResults;
+import org.guvnor.common.services.project.builder.service.BuildService;
+import org.guvnor.common.services.project.model.Project;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.workbench.events.ChangeType;
+import org.uberfire.workbench.events.ResourceChange;
+
+/**
+ * Schedules builds for Projects. Changes to a Project's resources are queued per Project and applied as a single
+ * batch once the debounce window has elapsed. At most one build per Project is in progress at any time; changes
+ * received whilst a build is in progress are coalesced into the next batch. A build of a Project is deferred whilst
+ * a Project on which it depends is being built, so dependent Projects are built in dependency order and
+ * independent Projects are built concurrently. A Project's queue is discarded once it has no more work.
+ */
+public class ProjectBuildScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger( ProjectBuildScheduler.class );
+
+    private final BuildService buildService;
+    private final LRUBuilderCache cache;
+    private final Event<BuildResults> buildResultsEvent;
+    private final Event<IncrementalBuildResults> incrementalBuildResultsEvent;
+    private final ExecutorService executor;
+    private final BuildMetricsCollector metrics;
+    private final ProjectDependencyGraph dependencyGraph;
+    private final long debounceWindow;
+    private final ScheduledExecutorService timer;
+
+    private final Map<Project, ProjectBuildQueue> queues = new HashMap<Project, ProjectBuildQueue>();
+
+    /**
+     * @param buildService
+     * @param cache Cached Builders, used to prioritise builds of Projects that have not been built
+     * @param buildResultsEvent Event fired with the results of full builds
+     * @param incrementalBuildResultsEvent Event fired with the results of incremental builds
+     * @param executor ExecutorService on which builds are executed
+     * @param metrics Collector of the time builds wait for the executor
+     * @param dependencyGraph Dependencies between Projects
+     * @param debounceWindow Time, in milliseconds, changes are collected before a build is started. Zero starts
+     * builds immediately, coalescing only those changes received whilst a build of the same Project is in progress.
+     */
+    public ProjectBuildScheduler( final BuildService buildService,
+                                  final LRUBuilderCache cache,
+                                  final Event<BuildResults> buildResultsEvent,
+                                  final Event<IncrementalBuildResults> incrementalBuildResultsEvent,
+                                  final ExecutorService executor,
+                                  final BuildMetricsCollector metrics,
+                                  final ProjectDependencyGraph dependencyGraph,
+                                  final long debounceWindow ) {
+        this.buildService = buildService;
+        this.cache = cache;
+        this.buildResultsEvent = buildResultsEvent;
+        this.incrementalBuildResultsEvent = incrementalBuildResultsEvent;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.dependencyGraph = dependencyGraph;
+        this.debounceWindow = debounceWindow;
+        this.timer = ( debounceWindow > 0 ? Executors.newSingleThreadScheduledExecutor() : null );
+    }
+
+    /**
+     * Queue changes to resources within a Project for an incremental build
+     * @param project
+     * @param changes
+     */
+    public void scheduleIncrementalBuild( final Project project,
+                                          final Collection<ResourceChange> changes ) {
+        while ( true ) {
+            final ProjectBuildQueue queue = getQueue( project );
+            synchronized ( queue ) {
+                if ( queue.isDiscarded ) {
+                    continue;
+                }
+                for ( ResourceChange change : changes ) {
+                    queue.addChange( change );
+                }
+                scheduleIfIdle( queue );
+                return;
+            }
+        }
+    }
+
+    /**
+     * Queue a full build of a Project
+     * @param project
+     */
+    public void scheduleFullBuild( final Project project ) {
+        while ( true ) {
+            final ProjectBuildQueue queue = getQueue( project );
+            synchronized ( queue ) {
+                if ( queue.isDiscarded ) {
+                    continue;
+                }
+                queue.isFullBuildRequested = true;
+                scheduleIfIdle( queue );
+                return;
+            }
+        }
+    }
+
+    public void shutdown() {
+        if ( timer != null ) {
+            timer.shutdownNow();
+        }
+    }
+
+    private ProjectBuildQueue getQueue( final Project project ) {
+        synchronized ( queues ) {
+            ProjectBuildQueue queue = queues.get( project );
+            if ( queue == null ) {
+                queue = new ProjectBuildQueue( project );
+                queues.put( project,
+                            queue );
+            }
+            return queue;
+        }
+    }
+
+    //Callers must hold the lock on the queue
+    private void scheduleIfIdle( final ProjectBuildQueue queue ) {
+        if ( queue.isScheduled ) {
+            return;
+        }
+        queue.isScheduled = true;
+        submit( queue );
+    }
+
+    //Callers must hold the lock on the queue
+    private void submit( final ProjectBuildQueue queue ) {
+        try {
+            if ( timer == null ) {
+                executor.execute( new ProjectBuildTask( queue ) );
+            } else {
+                timer.schedule( new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        try {
+                                            executor.execute( new ProjectBuildTask( queue ) );
+                                        } catch ( RejectedExecutionException ree ) {
+                                            synchronized ( queue ) {
+                                                reject( queue,
+                                                        ree );
+                                            }
+                                        }
+                                    }
+                                },
+                                debounceWindow,
+                                TimeUnit.MILLISECONDS );
+            }
+        } catch ( RejectedExecutionException ree ) {
+            reject( queue,
+                    ree );
+        }
+    }
+
+    //Callers must hold the lock on the queue. Builds waiting for the rejected build are abandoned too; as with the
+    //rejected build their changes remain queued until the next change to their Project.
+    private void reject( final ProjectBuildQueue queue,
+                         final RejectedExecutionException ree ) {
+        log.error( "Build of " + queue.project.getRootPath().toURI() + " rejected.",
+                   ree );
+        synchronized ( queues ) {
+            abandon( queue );
+        }
+    }
+
+    //Callers must hold the lock on the queues
+    private void abandon( final ProjectBuildQueue queue ) {
+        queue.isScheduled = false;
+        queue.waitingOn = null;
+        for ( ProjectBuildQueue waiter : queue.waiters ) {
+            abandon( waiter );
+        }
+        queue.waiters.clear();
+    }
+
+    //Callers must hold the lock on the queue. Returns the builds that were waiting for the Project's build. The
+    //queue has no more work, so it is discarded; callers that obtained it before then retry with a new queue.
+    private List<ProjectBuildQueue> setIdle( final ProjectBuildQueue queue ) {
+        synchronized ( queues ) {
+            queue.isScheduled = false;
+            final List<ProjectBuildQueue> waiters = new ArrayList<ProjectBuildQueue>( queue.waiters );
+            queue.waiters.clear();
+            for ( ProjectBuildQueue waiter : waiters ) {
+                waiter.waitingOn = null;
+            }
+            queue.isDiscarded = true;
+            queues.remove( queue.project );
+            return waiters;
+        }
+    }
+
+    //Number of Projects with queued or in progress builds
+    int getQueueCount() {
+        synchronized ( queues ) {
+            return queues.size();
+        }
+    }
+
+    //Defer a build whilst a Project on which it depends is being built, unless that Project is itself waiting for
+    //this build, i.e. the Projects form a cycle. The build is resumed when the other Project's build completes.
+    private boolean deferToUpstream( final ProjectBuildQueue queue ) {
+        final Set<Project> upstreamProjects = dependencyGraph.getUpstreamProjects( queue.project );
+        if ( upstreamProjects.isEmpty() ) {
+            return false;
+        }
+        synchronized ( queues ) {
+            for ( Project upstreamProject : upstreamProjects ) {
+                final ProjectBuildQueue upstream = queues.get( upstreamProject );
+                if ( upstream == null || !upstream.isScheduled || upstream.isWaitingOn( queue ) ) {
+                    continue;
+                }
+                log.info( "Build of " + queue.project.getRootPath().toURI() + " deferred until " + upstreamProject.getRootPath().toURI() + " has been built." );
+                queue.waitingOn = upstream;
+                upstream.waiters.add( queue );
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void resume( final List<ProjectBuildQueue> waiters ) {
+        for ( ProjectBuildQueue waiter : waiters ) {
+            synchronized ( waiter ) {
+                submit( waiter );
+            }
+        }
+    }
+
+    //Whether a Project has a cached Builder that has been built. Builders are not created to answer this. Whilst
+    //another build holds the Project's lock the Builder is assumed built, so submitters are not blocked; build()
+    //still falls back to a Full Build if it is not.
+    private boolean isBuilt( final Project project ) {
+        final Builder builder = cache.getBuilderIfPresent( project );
+        if ( builder == null ) {
+            return false;
+        }
+        final Lock lock = cache.getBuildLock( project );
+        if ( !lock.tryLock() ) {
+            return true;
+        }
+        try {
+            return builder.isBuilt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void build( final Project project,
+                        final Set<ResourceChange> changes,
+                        final boolean isFullBuildRequested ) {
+        //Fall back to a Full Build in lieu of an Incremental Build if the Project has not been previously built
+        if ( !buildService.isBuilt( project ) ) {
+            log.info( "Build request being processed: " + project.getRootPath().toURI() + " (full)." );
+            final BuildResults results = buildService.build( project );
+            buildResultsEvent.fire( results );
+            return;
+        }
+
+        if ( !changes.isEmpty() ) {
+            log.info( "Incremental build request being processed: " + project.getRootPath().toURI() + " (" + changes.size() + " change(s))." );
+            final IncrementalBuildResults results = buildService.applyBatchResourceChanges( project,
+                                                                                            changes );
+            incrementalBuildResultsEvent.fire( results );
+        }
+
+        if ( isFullBuildRequested ) {
+            log.info( "Build request being processed: " + project.getRootPath().toURI() + " (full)." );
+            final BuildResults results = buildService.build( project );
+            buildResultsEvent.fire( results );
+        }
+    }
+
+    private class ProjectBuildTask implements PrioritizedBuildTask {
+
+        private final ProjectBuildQueue queue;
+        private final BuildPriority priority;
+        private final long submitTime = System.nanoTime();
+
+        private ProjectBuildTask( final ProjectBuildQueue queue ) {
+            this.queue = queue;
+            final boolean isFullBuildRequested;
+            synchronized ( queue ) {
+                isFullBuildRequested = queue.isFullBuildRequested;
+            }
+            //Projects that have not been built are fully built, whatever changes were queued
+            this.priority = ( isFullBuildRequested || !isBuilt( queue.project ) ? BuildPriority.FULL_BUILD : BuildPriority.INCREMENTAL_BUILD );
+        }
+
+        @Override
+        public BuildPriority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public void run() {
+            if ( deferToUpstream( queue ) ) {
+                return;
+            }
+            metrics.recordTime( BuildMetrics.TIMER_QUEUE_WAIT,
+                                System.nanoTime() - submitTime );
+            final Set<ResourceChange> changes;
+            final boolean isFullBuildRequested;
+            synchronized ( queue ) {
+                changes = new HashSet<ResourceChange>( queue.pendingChanges.values() );
+                isFullBuildRequested = queue.isFullBuildRequested;
+                queue.pendingChanges.clear();
+                queue.pendingAdditions.clear();
+                queue.isFullBuildRequested = false;
+            }
+
+            try {
+                if ( isFullBuildRequested || !changes.isEmpty() ) {
+                    build( queue.project,
+                           changes,
+                           isFullBuildRequested );
+                }
+
+            } catch ( Exception e ) {
+                log.error( e.getMessage(),
+                           e );
+
+            } finally {
+                //Changes received whilst building are processed by the next build
+                List<ProjectBuildQueue> waiters = Collections.emptyList();
+                synchronized ( queue ) {
+                    if ( queue.hasPendingWork() ) {
+                        submit( queue );
+                    } else {
+                        waiters = setIdle( queue );
+                    }
+                }
+                resume( waiters );
+            }
+        }
+    }
+
+    private static class ProjectBuildQueue {
+
+        private final Project project;
+        private final Map<Path, ResourceChange> pendingChanges = new LinkedHashMap<Path, ResourceChange>();
+        private final Set<Path> pendingAdditions = new HashSet<Path>();
+        private boolean isFullBuildRequested = false;
+        private volatile boolean isScheduled = false;
+        private boolean isDiscarded = false;
+
+        //Guarded by the lock on the queues
+        private ProjectBuildQueue waitingOn;
+        private final Set<ProjectBuildQueue> waiters = new LinkedHashSet<ProjectBuildQueue>();
+
+        private ProjectBuildQueue( final Project project ) {
+            this.project = project;
+        }
+
+        private boolean isWaitingOn( final ProjectBuildQueue other ) {
+            for ( ProjectBuildQueue q = this; q != null; q = q.waitingOn ) {
+                if ( q == other ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean hasPendingWork() {
+            return isFullBuildRequested || !pendingChanges.isEmpty();
+        }
+
+        //Collapse successive changes to the same resource. Builder handles ADD and UPDATE identically.
+        private void addChange( final ResourceChange change ) {
+            final Path path = change.getPath();
+            final ResourceChange previous = pendingChanges.get( path );
+            if ( previous == null ) {
+                pendingChanges.put( path,
+                                    change );
+                if ( change.getType() == ChangeType.ADD ) {
+                    pendingAdditions.add( path );
+                }
+                return;
+            }
+
+            final ChangeType previousType = previous.getType();
+            switch ( change.getType() ) {
+                case ADD:
+                    //Re-adding a deleted resource updates it; otherwise the pending ADD or UPDATE already covers it
+                    if ( previousType == ChangeType.DELETE ) {
+                        pendingChanges.put( path,
+                                            change );
+                    }
+                    break;
+                case UPDATE:
+                    //Updating a pending addition is still an addition
+                    if ( previousType != ChangeType.ADD ) {
+                        pendingChanges.put( path,
+                                            change );
+                    }
+                    break;
+                case DELETE:
+                    //A new resource deleted before being built never needs to be built
+                    if ( pendingAdditions.remove( path ) ) {
+                        pendingChanges.remove( path );
+                    } else {
+                        pendingChanges.put( path,
+                                            change );
+                    }
+                    break;
+                default:
+                    pendingChanges.put( path,
+                                        change );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.enterprise.context.ApplicationScoped;
+
+import org.guvnor.common.services.project.model.Dependency;
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.common.services.project.model.POM;
+import org.guvnor.common.services.project.model.Project;
+import org.kie.commons.validation.PortablePreconditions;
+
+/**
+ * Dependencies between Projects, derived from the dependencies in each Project's pom.xml and the GAVs of other
+ * Projects. Only Projects for which a Builder has been created are known.
+ */
+@ApplicationScoped
+public class ProjectDependencyGraph {
+
+    private final Map<Project, String> gavs = new HashMap<Project, String>();
+    private final Map<Project, Set<String>> dependencies = new HashMap<Project, Set<String>>();
+    private final Map<String, Project> projectsByGav = new HashMap<String, Project>();
+
+    /**
+     * Record, or replace, the GAV and dependencies of a Project
+     * @param project
+     * @param pom
+     */
+    public synchronized void update( final Project project,
+                                     final POM pom ) {
+        PortablePreconditions.checkNotNull( "project",
+                                            project );
+        PortablePreconditions.checkNotNull( "pom",
+                                            pom );
+        remove( project );
+        final String gav = toString( pom.getGav() );
+        final Set<String> projectDependencies = new HashSet<String>();
+        for ( Dependency dependency : pom.getDependencies() ) {
+            projectDependencies.add( toString( dependency ) );
+        }
+        gavs.put( project,
+                  gav );
+        dependencies.put( project,
+                          projectDependencies );
+        projectsByGav.put( gav,
+                           project );
+    }
+
+    public synchronized void remove( final Project project ) {
+        final String gav = gavs.remove( project );
+        dependencies.remove( project );
+        if ( gav != null && project.equals( projectsByGav.get( gav ) ) ) {
+            projectsByGav.remove( gav );
+        }
+    }
+
+    /**
+     * The Projects on whose KieModules a Project directly depends
+     * @param project
+     * @return
+     */
+    public synchronized Set<Project> getUpstreamProjects( final Project project ) {
+        final Set<Project> upstream = new HashSet<Project>();
+        final Set<String> projectDependencies = dependencies.get( project );
+        if ( projectDependencies == null ) {
+            return upstream;
+        }
+        for ( String gav : projectDependencies ) {
+            final Project dependency = projectsByGav.get( gav );
+            if ( dependency != null && !dependency.equals( project ) ) {
+                upstream.add( dependency );
+            }
+        }
+        return upstream;
+    }
+
+    /**
+     * The Projects that directly depend on a Project's KieModule
+     * @param project
+     * @return
+     */
+    public synchronized Set<Project> getDownstreamProjects( final Project project ) {
+        final Set<Project> downstream = new HashSet<Project>();
+        final String gav = gavs.get( project );
+        if ( gav == null ) {
+            return downstream;
+        }
+        for ( Map.Entry<Project, Set<String>> e : dependencies.entrySet() ) {
+            if ( e.getValue().contains( gav ) && !e.getKey().equals( project ) ) {
+                downstream.add( e.getKey() );
+            }
+        }
+        return downstream;
+    }
+
+    /**
+     * Order Projects so each follows the Projects, within the collection, on which it depends. Projects within a
+     * dependency cycle are left in their original order.
+     * @param projects
+     * @return
+     */
+    public synchronized List<Project> sort( final Collection<Project> projects ) {
+        final Set<Project> remaining = new LinkedHashSet<Project>( projects );
+        final List<Project> sorted = new ArrayList<Project>( remaining.size() );
+        while ( !remaining.isEmpty() ) {
+            final List<Project> ready = new ArrayList<Project>();
+            for ( Project project : remaining ) {
+                boolean isReady = true;
+                for ( Project upstream : getUpstreamProjects( project ) ) {
+                    if ( remaining.contains( upstream ) ) {
+                        isReady = false;
+                        break;
+                    }
+                }
+                if ( isReady ) {
+                    ready.add( project );
+                }
+            }
+            //The remaining Projects form at least one cycle
+            if ( ready.isEmpty() ) {
+                ready.addAll( remaining );
+            }
+            sorted.addAll( ready );
+            remaining.removeAll( ready );
+        }
+        return sorted;
+    }
+
+    private static String toString( final GAV gav ) {
+        return gav.getGroupId() + ":" + gav.getArtifactId() + ":" + gav.getVersion();
+    }
+
+}
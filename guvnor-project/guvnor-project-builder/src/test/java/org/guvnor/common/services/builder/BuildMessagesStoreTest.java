@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.guvnor.common.services.project.builder.model.BuildMessage;
+import org.guvnor.common.services.project.builder.model.BuildResults;
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.common.services.shared.config.AppConfigService;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class BuildMessagesStoreTest {
+
+    @Test
+    public void testResultsWithinLimitAreNotTruncated() throws Exception {
+        final BuildMessagesStore store = makeStore( "3" );
+        final BuildResults results = makeResults( 3 );
+
+        assertSame( results,
+                    store.truncate( results ) );
+    }
+
+    @Test
+    public void testTruncateAndPage() throws Exception {
+        final BuildMessagesStore store = makeStore( "2" );
+        final BuildResults results = store.truncate( makeResults( 5 ) );
+
+        assertTrue( results.isTruncated() );
+        assertEquals( 2,
+                      results.getMessages().size() );
+        assertEquals( 5,
+                      results.getTotalMessageCount() );
+        assertEquals( 5,
+                      results.getErrorCount() );
+
+        //Pages are no larger than the limit
+        final List<BuildMessage> page = store.getMessages( results.getMessagesId(),
+                                                           2,
+                                                           10 );
+        assertEquals( 2,
+                      page.size() );
+        assertEquals( "message 2",
+                      page.get( 0 ).getText() );
+        assertEquals( 1,
+                      store.getMessages( results.getMessagesId(),
+                                         4,
+                                         10 ).size() );
+        assertTrue( store.getMessages( "unknown",
+                                       0,
+                                       10 ).isEmpty() );
+    }
+
+    @Test
+    public void testFailedBuildKeepsAMessage() throws Exception {
+        //A limit of zero would hide that the build failed
+        final BuildMessagesStore store = makeStore( "0" );
+        final BuildResults results = store.truncate( makeResults( 3 ) );
+
+        assertEquals( 1,
+                      results.getMessages().size() );
+        assertEquals( 3,
+                      results.getTotalMessageCount() );
+    }
+
+    @Test
+    public void testMessagesWithoutLevelAreCounted() throws Exception {
+        final BuildMessagesStore store = makeStore( "1" );
+        final BuildResults results = new BuildResults( new GAV() );
+        results.addBuildMessage( new BuildMessage() );
+        results.addBuildMessage( new BuildMessage() );
+
+        assertEquals( 2,
+                      store.truncate( results ).getTotalMessageCount() );
+    }
+
+    private BuildMessagesStore makeStore( final String maxMessages ) {
+        final Map<String, String> preferences = new HashMap<String, String>();
+        preferences.put( "build.max-messages",
+                         maxMessages );
+        final AppConfigService appConfigService = mock( AppConfigService.class );
+        when( appConfigService.loadPreferences() ).thenReturn( preferences );
+        final BuildMessagesStore store = new BuildMessagesStore( appConfigService );
+        store.setup();
+        return store;
+    }
+
+    private BuildResults makeResults( final int errors ) {
+        final BuildResults results = new BuildResults( new GAV() );
+        for ( int i = 0; i < errors; i++ ) {
+            final BuildMessage message = new BuildMessage();
+            message.setLevel( BuildMessage.Level.ERROR );
+            message.setText( "message " + i );
+            results.addBuildMessage( message );
+        }
+        return results;
+    }
+
+}
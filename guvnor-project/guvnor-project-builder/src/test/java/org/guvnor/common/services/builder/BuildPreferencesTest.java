@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.guvnor.common.services.shared.config.AppConfigService;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class BuildPreferencesTest {
+
+    private final Map<String, String> preferences = new HashMap<String, String>();
+    private AppConfigService appConfigService;
+
+    @Before
+    public void setUp() throws Exception {
+        appConfigService = mock( AppConfigService.class );
+        when( appConfigService.loadPreferences() ).thenReturn( preferences );
+    }
+
+    @Test
+    public void testGetLong() throws Exception {
+        preferences.put( "build.value",
+                         " 42 " );
+        assertEquals( 42,
+                      BuildPreferences.getLong( appConfigService,
+                                                "build.value",
+                                                10 ) );
+    }
+
+    @Test
+    public void testGetLongDefaults() throws Exception {
+        preferences.put( "build.blank",
+                         " " );
+        preferences.put( "build.invalid",
+                         "ten" );
+        assertEquals( 10,
+                      BuildPreferences.getLong( appConfigService,
+                                                "build.unset",
+                                                10 ) );
+        assertEquals( 10,
+                      BuildPreferences.getLong( appConfigService,
+                                                "build.blank",
+                                                10 ) );
+        assertEquals( 10,
+                      BuildPreferences.getLong( appConfigService,
+                                                "build.invalid",
+                                                10 ) );
+    }
+
+    @Test
+    public void testGetLongRaisedToMinimum() throws Exception {
+        preferences.put( "build.value",
+                         "-5" );
+        assertEquals( 1,
+                      BuildPreferences.getLong( appConfigService,
+                                                "build.value",
+                                                10,
+                                                1 ) );
+        assertEquals( -5,
+                      BuildPreferences.getLong( appConfigService,
+                                                "build.value",
+                                                10 ) );
+    }
+
+    @Test
+    public void testGetString() throws Exception {
+        preferences.put( "build.value",
+                         " /tmp/snapshots " );
+        preferences.put( "build.blank",
+                         "" );
+        assertEquals( "/tmp/snapshots",
+                      BuildPreferences.getString( appConfigService,
+                                                  "build.value" ) );
+        assertNull( BuildPreferences.getString( appConfigService,
+                                                "build.blank" ) );
+        assertNull( BuildPreferences.getString( appConfigService,
+                                                "build.unset" ) );
+    }
+
+}
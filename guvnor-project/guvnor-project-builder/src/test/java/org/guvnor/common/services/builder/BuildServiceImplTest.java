@@ -19,6 +19,8 @@ package org.guvnor.common.services.builder;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.enterprise.context.spi.CreationalContext;
 import javax.enterprise.inject.spi.Bean;
 import javax.enterprise.inject.spi.BeanManager;
@@ -74,6 +76,34 @@ public class BuildServiceImplTest {
         assertTrue( results.getMessages().isEmpty() );
     }
 
+    @Test
+    public void testBuilderSimpleKProjectParallelIngestion() throws Exception {
+        Paths paths = getReference( Paths.class );
+        IOService ioService = getReference( IOService.class );
+        ProjectService projectService = getReference( ProjectService.class );
+
+        URL url = this.getClass().getResource( "/ExampleWithExcel" );
+        SimpleFileSystemProvider p = new SimpleFileSystemProvider();
+        org.kie.commons.java.nio.file.Path path = p.getPath( url.toURI() );
+
+        final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try {
+            final Builder builder = new Builder( path,
+                                                 new GAV(),
+                                                 paths,
+                                                 ioService,
+                                                 projectService,
+                                                 new ArrayList<BuildValidationHelper>(),
+                                                 executor );
+
+            final BuildResults results = builder.build();
+
+            assertTrue( results.getMessages().isEmpty() );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     @Ignore("//TODO {manstis}")
     public void testBuilderKProjectHasDependency() throws Exception {
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BuildTaskQueueTest {
+
+    @Test
+    public void testTasksTakenInPriorityOrder() throws Exception {
+        final BuildTaskQueue queue = new BuildTaskQueue( 10,
+                                                         60000 );
+        final Runnable deploy = new TestTask( BuildPriority.DEPLOY );
+        final Runnable fullBuild1 = new TestTask( BuildPriority.FULL_BUILD );
+        final Runnable fullBuild2 = new TestTask( BuildPriority.FULL_BUILD );
+        final Runnable incrementalBuild = new TestTask( BuildPriority.INCREMENTAL_BUILD );
+
+        assertTrue( queue.offer( deploy ) );
+        assertTrue( queue.offer( fullBuild1 ) );
+        assertTrue( queue.offer( fullBuild2 ) );
+        assertTrue( queue.offer( incrementalBuild ) );
+
+        assertSame( incrementalBuild,
+                    queue.take() );
+        assertSame( fullBuild1,
+                    queue.take() );
+        assertSame( fullBuild2,
+                    queue.take() );
+        assertSame( deploy,
+                    queue.take() );
+        assertNull( queue.poll() );
+    }
+
+    @Test
+    public void testCapacity() throws Exception {
+        final BuildTaskQueue queue = new BuildTaskQueue( 1,
+                                                         60000 );
+        assertTrue( queue.offer( new TestTask( BuildPriority.FULL_BUILD ) ) );
+        assertFalse( queue.offer( new TestTask( BuildPriority.INCREMENTAL_BUILD ) ) );
+        assertEquals( 0,
+                      queue.remainingCapacity() );
+
+        queue.poll();
+        assertTrue( queue.offer( new TestTask( BuildPriority.INCREMENTAL_BUILD ) ) );
+    }
+
+    @Test
+    public void testStarvedTaskTakenFirst() throws Exception {
+        final BuildTaskQueue queue = new BuildTaskQueue( 10,
+                                                         0 );
+        final Runnable deploy = new TestTask( BuildPriority.DEPLOY );
+        final Runnable incrementalBuild = new TestTask( BuildPriority.INCREMENTAL_BUILD );
+
+        assertTrue( queue.offer( deploy ) );
+        Thread.sleep( 5 );
+        assertTrue( queue.offer( incrementalBuild ) );
+
+        //Both tasks have exceeded the threshold, so the longest waiting is taken
+        Thread.sleep( 5 );
+        assertSame( deploy,
+                    queue.take() );
+        assertSame( incrementalBuild,
+                    queue.take() );
+    }
+
+    @Test
+    public void testTasksWithoutPriorityAreFullBuilds() throws Exception {
+        final BuildTaskQueue queue = new BuildTaskQueue( 10,
+                                                         60000 );
+        final Runnable plain = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        final Runnable deploy = new TestTask( BuildPriority.DEPLOY );
+        final Runnable incrementalBuild = new TestTask( BuildPriority.INCREMENTAL_BUILD );
+
+        assertTrue( queue.offer( deploy ) );
+        assertTrue( queue.offer( plain ) );
+        assertTrue( queue.offer( incrementalBuild ) );
+
+        assertSame( incrementalBuild,
+                    queue.take() );
+        assertSame( plain,
+                    queue.take() );
+        assertSame( deploy,
+                    queue.take() );
+    }
+
+    private static class TestTask implements PrioritizedBuildTask {
+
+        private final BuildPriority priority;
+
+        private TestTask( final BuildPriority priority ) {
+            this.priority = priority;
+        }
+
+        @Override
+        public BuildPriority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.guvnor.common.services.project.builder.service.BuildValidationHelper;
+import org.guvnor.common.services.project.builder.service.SuffixAwareBuildValidationHelper;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.commons.java.nio.file.Path;
+import org.kie.commons.java.nio.fs.file.SimpleFileSystemProvider;
+import org.uberfire.backend.server.util.Paths;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class BuildValidationHelperIndexTest {
+
+    private final SimpleFileSystemProvider fs = new SimpleFileSystemProvider();
+
+    private SuffixAwareBuildValidationHelper xlsHelper;
+    private BuildValidationHelper genericHelper;
+
+    @Before
+    public void setUp() throws Exception {
+        xlsHelper = mock( SuffixAwareBuildValidationHelper.class );
+        when( xlsHelper.getSuffixes() ).thenReturn( new HashSet<String>( Arrays.asList( ".xls",
+                                                                                         ".gdst" ) ) );
+        genericHelper = mock( BuildValidationHelper.class );
+    }
+
+    @Test
+    public void testSuffixAwareHelperSelectedBySuffix() throws Exception {
+        final BuildValidationHelperIndex index = makeIndex( xlsHelper,
+                                                            genericHelper );
+
+        assertSame( xlsHelper,
+                    index.getBuildValidationHelper( path( "/project/src/main/resources/table.xls" ) ) );
+        assertSame( xlsHelper,
+                    index.getBuildValidationHelper( path( "/project/src/main/resources/table.gdst" ) ) );
+        verify( xlsHelper,
+                never() ).accepts( any( org.uberfire.backend.vfs.Path.class ) );
+        verify( genericHelper,
+                never() ).accepts( any( org.uberfire.backend.vfs.Path.class ) );
+    }
+
+    @Test
+    public void testOnlyHelpersWithoutSuffixesAreAsked() throws Exception {
+        final BuildValidationHelperIndex index = makeIndex( xlsHelper,
+                                                            genericHelper );
+        when( genericHelper.accepts( any( org.uberfire.backend.vfs.Path.class ) ) ).thenReturn( true );
+
+        assertSame( genericHelper,
+                    index.getBuildValidationHelper( path( "/project/src/main/resources/rule.drl" ) ) );
+        verify( xlsHelper,
+                never() ).accepts( any( org.uberfire.backend.vfs.Path.class ) );
+    }
+
+    @Test
+    public void testHelpersConsultedInRegistrationOrder() throws Exception {
+        final BuildValidationHelperIndex index = makeIndex( genericHelper,
+                                                            xlsHelper );
+        when( genericHelper.accepts( any( org.uberfire.backend.vfs.Path.class ) ) ).thenReturn( true );
+
+        assertSame( genericHelper,
+                    index.getBuildValidationHelper( path( "/project/src/main/resources/table.xls" ) ) );
+    }
+
+    @Test
+    public void testSelectionCachedUntilRemoved() throws Exception {
+        final BuildValidationHelperIndex index = makeIndex( genericHelper );
+        final Path resource = path( "/project/src/main/resources/rule.drl" );
+
+        assertNull( index.getBuildValidationHelper( resource ) );
+        assertNull( index.getBuildValidationHelper( resource ) );
+        verify( genericHelper,
+                times( 1 ) ).accepts( any( org.uberfire.backend.vfs.Path.class ) );
+
+        index.remove( resource );
+        assertNull( index.getBuildValidationHelper( resource ) );
+        verify( genericHelper,
+                times( 2 ) ).accepts( any( org.uberfire.backend.vfs.Path.class ) );
+    }
+
+    @Test
+    public void testNoHelpers() throws Exception {
+        final BuildValidationHelperIndex index = new BuildValidationHelperIndex( Collections.<BuildValidationHelper>emptyList(),
+                                                                                 mock( Paths.class ) );
+        assertNull( index.getBuildValidationHelper( path( "/project/src/main/resources/table.xls" ) ) );
+    }
+
+    private BuildValidationHelperIndex makeIndex( final BuildValidationHelper... helpers ) {
+        return new BuildValidationHelperIndex( Arrays.asList( helpers ),
+                                               mock( Paths.class ) );
+    }
+
+    private Path path( final String path ) {
+        return fs.getPath( URI.create( "file://" + path ) );
+    }
+
+}
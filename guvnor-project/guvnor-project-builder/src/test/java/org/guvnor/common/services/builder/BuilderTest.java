@@ -0,0 +1,291 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+
+import org.apache.commons.io.FileUtils;
+import org.guvnor.common.services.project.builder.model.BuildResults;
+import org.guvnor.common.services.project.builder.model.IncrementalBuildResults;
+import org.guvnor.common.services.project.builder.service.BuildValidationHelper;
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.common.services.project.service.ProjectService;
+import org.jboss.weld.environment.se.StartMain;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.runtime.KieContainer;
+import org.kie.commons.io.IOService;
+import org.kie.commons.java.nio.file.Path;
+import org.kie.commons.java.nio.fs.file.SimpleFileSystemProvider;
+import org.uberfire.backend.server.util.Paths;
+import org.uberfire.rpc.impl.SessionInfoImpl;
+import org.uberfire.security.Role;
+import org.uberfire.security.impl.IdentityImpl;
+import org.uberfire.workbench.events.ChangeType;
+import org.uberfire.workbench.events.ResourceChange;
+
+import static org.junit.Assert.*;
+
+public class BuilderTest {
+
+    private static final String VALID_DRL = "rule \"Valid\"\nwhen\nthen\nend\n";
+
+    private static final String INVALID_DRL = "rule \"Invalid\"\nwhen\n  This is not DRL\nthen\nend\n";
+
+    private final SimpleFileSystemProvider fs = new SimpleFileSystemProvider();
+    private BeanManager beanManager;
+    private File projectDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        StartMain startMain = new StartMain( new String[ 0 ] );
+        beanManager = startMain.go().getBeanManager();
+
+        //Builders are given a copy of the Project, as tests change its resources
+        projectDirectory = File.createTempFile( "builder-test",
+                                                "" );
+        projectDirectory.delete();
+        FileUtils.copyDirectory( new File( this.getClass().getResource( "/BuildChangeListenerRepo" ).toURI() ),
+                                 projectDirectory );
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory( projectDirectory );
+    }
+
+    @Test
+    public void testKieContainerKeptUntilAllIncrementalErrorsCorrected() throws Exception {
+        final Builder builder = makeBuilder();
+        final BuildResults results = builder.build();
+        assertTrue( results.getMessages().isEmpty() );
+        final KieContainer kieContainer = builder.getKieContainer();
+        assertNotNull( kieContainer );
+
+        //An error is added
+        final File invalid = writeResource( "invalid.drl",
+                                            INVALID_DRL );
+        final IncrementalBuildResults invalidResults = builder.addResource( toPath( invalid ) );
+        assertFalse( invalidResults.getAddedMessages().isEmpty() );
+        assertSame( kieContainer,
+                    builder.getKieContainer() );
+
+        //Another resource changes without error, but the earlier error remains
+        final File update = writeResource( "update.drl",
+                                           VALID_DRL.replace( "Valid",
+                                                              "Updated again" ) );
+        final IncrementalBuildResults updateResults = builder.updateResource( toPath( update ) );
+        assertTrue( updateResults.getAddedMessages().isEmpty() );
+        assertSame( kieContainer,
+                    builder.getKieContainer() );
+
+        //The error is corrected
+        writeResource( "invalid.drl",
+                       VALID_DRL );
+        final IncrementalBuildResults correctedResults = builder.updateResource( toPath( invalid ) );
+        assertFalse( correctedResults.getRemovedMessages().isEmpty() );
+        assertNotNull( builder.getKieContainer() );
+        assertNotSame( kieContainer,
+                       builder.getKieContainer() );
+    }
+
+    @Test
+    public void testKieContainerCreatedOnceErrorsOfFullBuildCorrected() throws Exception {
+        final File invalid = writeResource( "invalid.drl",
+                                            INVALID_DRL );
+        final Builder builder = makeBuilder();
+        assertFalse( builder.build().getMessages().isEmpty() );
+        assertNull( builder.getKieContainer() );
+
+        //The error is corrected incrementally
+        writeResource( "invalid.drl",
+                       VALID_DRL.replace( "Valid",
+                                          "Corrected" ) );
+        assertFalse( builder.updateResource( toPath( invalid ) ).getRemovedMessages().isEmpty() );
+        assertNotNull( builder.getKieContainer() );
+    }
+
+    @Test
+    public void testResourceWithUnchangedContentIsNotRebuilt() throws Exception {
+        final Builder builder = makeBuilder();
+        builder.build();
+
+        final File invalid = writeResource( "invalid.drl",
+                                            INVALID_DRL );
+        assertFalse( builder.addResource( toPath( invalid ) ).getAddedMessages().isEmpty() );
+
+        //Were the resource re-built its errors would be reported again
+        final IncrementalBuildResults addedAgainResults = builder.addResource( toPath( invalid ) );
+        assertTrue( addedAgainResults.getAddedMessages().isEmpty() );
+        assertTrue( addedAgainResults.getRemovedMessages().isEmpty() );
+
+        final IncrementalBuildResults unchangedResults = builder.updateResource( toPath( invalid ) );
+        assertTrue( unchangedResults.getAddedMessages().isEmpty() );
+        assertTrue( unchangedResults.getRemovedMessages().isEmpty() );
+
+        //Changing the content re-builds the resource
+        writeResource( "invalid.drl",
+                       VALID_DRL );
+        assertFalse( builder.updateResource( toPath( invalid ) ).getRemovedMessages().isEmpty() );
+    }
+
+    @Test
+    public void testBatchChangeOfDeletedResourceIsProcessedAsDelete() throws Exception {
+        final Builder builder = makeBuilder();
+        builder.build();
+
+        final File invalid = writeResource( "invalid.drl",
+                                            INVALID_DRL );
+        assertFalse( builder.addResource( toPath( invalid ) ).getAddedMessages().isEmpty() );
+
+        //The resource is deleted after the change to it was raised
+        final Paths paths = getReference( Paths.class );
+        final org.uberfire.backend.vfs.Path invalidHandle = paths.convert( toPath( invalid ) );
+        assertTrue( invalid.delete() );
+        final File added = writeResource( "added.drl",
+                                          VALID_DRL.replace( "Valid",
+                                                             "Added" ) );
+
+        final SessionInfoImpl sessionInfo = new SessionInfoImpl( "id",
+                                                                 new IdentityImpl( "user",
+                                                                                   Collections.<Role>emptyList() ) );
+        final Set<ResourceChange> changes = new HashSet<ResourceChange>();
+        changes.add( new ResourceChange( ChangeType.UPDATE,
+                                         invalidHandle,
+                                         sessionInfo ) );
+        changes.add( new ResourceChange( ChangeType.ADD,
+                                         paths.convert( toPath( added ) ),
+                                         sessionInfo ) );
+        final IncrementalBuildResults results = builder.applyBatchResourceChanges( changes );
+        assertFalse( results.getRemovedMessages().isEmpty() );
+        assertTrue( results.getAddedMessages().isEmpty() );
+        assertNotNull( builder.getKieContainer() );
+    }
+
+    @Test
+    public void testRestoreFromSnapshot() throws Exception {
+        final Builder builder = makeBuilder();
+        final BuildSnapshot snapshot = copy( builder.createSnapshot( builder.build() ) );
+        assertNotNull( snapshot );
+
+        //A Builder for the unchanged Project is built without being compiled
+        final Builder restoredBuilder = makeBuilder();
+        assertTrue( restoredBuilder.restore( snapshot ) );
+        assertTrue( restoredBuilder.isBuilt() );
+        assertTrue( restoredBuilder.isRestored() );
+        assertNotNull( restoredBuilder.getKieContainer() );
+
+        //A restored Builder cannot be restored again
+        assertFalse( restoredBuilder.restore( snapshot ) );
+    }
+
+    @Test
+    public void testOnlyFirstBuildOfRestoredBuilderIsNotCompiled() throws Exception {
+        final Builder builder = makeBuilder();
+        final BuildSnapshot snapshot = copy( builder.createSnapshot( builder.build() ) );
+
+        final Builder restoredBuilder = makeBuilder();
+        assertTrue( restoredBuilder.restore( snapshot ) );
+
+        //The first build reports the restored outcome, so there is nothing compiled to take a snapshot of
+        assertTrue( restoredBuilder.build().getMessages().isEmpty() );
+        assertFalse( restoredBuilder.isRestored() );
+        assertNull( restoredBuilder.createSnapshot( new BuildResults( new GAV() ) ) );
+
+        //Subsequent builds compile the Project
+        final BuildResults results = restoredBuilder.build();
+        assertTrue( results.getMessages().isEmpty() );
+        assertNotNull( restoredBuilder.createSnapshot( results ) );
+        assertTrue( restoredBuilder.isBuilt() );
+    }
+
+    @Test
+    public void testSnapshotOfChangedProjectIsNotRestored() throws Exception {
+        final Builder builder = makeBuilder();
+        final BuildSnapshot snapshot = copy( builder.createSnapshot( builder.build() ) );
+
+        writeResource( "update.drl",
+                       VALID_DRL.replace( "Valid",
+                                          "Changed since snapshot" ) );
+        final Builder changedBuilder = makeBuilder();
+        assertFalse( changedBuilder.restore( snapshot ) );
+        assertFalse( changedBuilder.isBuilt() );
+        assertFalse( changedBuilder.isRestored() );
+    }
+
+    //Snapshots are restored from a copy serialized by the BuildSnapshotStore
+    private BuildSnapshot copy( final BuildSnapshot snapshot ) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream( bytes );
+        oos.writeObject( snapshot );
+        oos.close();
+        final ObjectInputStream ois = new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+        try {
+            return (BuildSnapshot) ois.readObject();
+        } finally {
+            ois.close();
+        }
+    }
+
+    private Builder makeBuilder() {
+        return new Builder( toPath( projectDirectory ),
+                            new GAV(),
+                            getReference( Paths.class ),
+                            getReference( IOService.class ),
+                            getReference( ProjectService.class ),
+                            new ArrayList<BuildValidationHelper>() );
+    }
+
+    private File writeResource( final String fileName,
+                                final String content ) throws Exception {
+        final File file = new File( projectDirectory,
+                                    "src/main/resources/" + fileName );
+        FileUtils.writeStringToFile( file,
+                                     content,
+                                     "UTF-8" );
+        return file;
+    }
+
+    private Path toPath( final File file ) {
+        //Directories' URIs end with a separator, unlike those of the Paths of a Project's root
+        final String uri = file.toURI().toString();
+        return fs.getPath( URI.create( uri.endsWith( "/" ) ? uri.substring( 0,
+                                                                            uri.length() - 1 ) : uri ) );
+    }
+
+    private <T> T getReference( Class<T> clazz ) {
+        Bean bean = (Bean) beanManager.getBeans( clazz ).iterator().next();
+        CreationalContext cc = beanManager.createCreationalContext( bean );
+        return (T) beanManager.getReference( bean,
+                                             clazz,
+                                             cc );
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.enterprise.event.Event;
+
+import org.guvnor.common.services.project.builder.model.BuildResults;
+import org.guvnor.common.services.project.builder.model.IncrementalBuildResults;
+import org.guvnor.common.services.project.builder.service.BuildService;
+import org.guvnor.common.services.project.model.Project;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.workbench.events.ChangeType;
+import org.uberfire.workbench.events.ResourceChange;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ProjectBuildSchedulerTest {
+
+    //Milliseconds changes are collected before a build is started
+    private static final long DEBOUNCE_WINDOW = 200;
+
+    private BuildService buildService;
+    private LRUBuilderCache cache;
+    private Event<IncrementalBuildResults> incrementalBuildResultsEvent;
+    private ExecutorService executor;
+    private ProjectBuildScheduler scheduler;
+    private Project project;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        project = new Project( makePath( "default://project" ),
+                               makePath( "default://project/pom.xml" ),
+                               makePath( "default://project/src/main/resources/META-INF/kmodule.xml" ),
+                               makePath( "default://project/project.imports" ),
+                               "project" );
+        buildService = mock( BuildService.class );
+        when( buildService.isBuilt( project ) ).thenReturn( true );
+        when( buildService.applyBatchResourceChanges( eq( project ),
+                                                      any( Set.class ) ) ).thenReturn( new IncrementalBuildResults() );
+        final Builder builder = mock( Builder.class );
+        when( builder.isBuilt() ).thenReturn( true );
+        cache = mock( LRUBuilderCache.class );
+        when( cache.getBuilderIfPresent( project ) ).thenReturn( builder );
+        when( cache.getBuildLock( project ) ).thenReturn( new ReentrantLock() );
+        incrementalBuildResultsEvent = mock( Event.class );
+        executor = Executors.newSingleThreadExecutor();
+        scheduler = new ProjectBuildScheduler( buildService,
+                                               cache,
+                                               mock( Event.class ),
+                                               incrementalBuildResultsEvent,
+                                               executor,
+                                               mock( BuildMetricsCollector.class ),
+                                               new ProjectDependencyGraph(),
+                                               DEBOUNCE_WINDOW );
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRapidChangesProduceOneIncrementalBuild() throws Exception {
+        for ( int i = 0; i < 10; i++ ) {
+            scheduleChange( ChangeType.ADD,
+                            makePath( "default://project/src/main/resources/rule" + i + ".drl" ) );
+        }
+
+        final Set<ResourceChange> changes = awaitIncrementalBuild();
+        assertEquals( 10,
+                      changes.size() );
+        verify( buildService,
+                never() ).build( any( Project.class ) );
+    }
+
+    @Test
+    public void testRepeatedChangesToResourceAreCollapsed() throws Exception {
+        final Path resource = makePath( "default://project/src/main/resources/rule.drl" );
+        scheduleChange( ChangeType.ADD,
+                        resource );
+        for ( int i = 0; i < 10; i++ ) {
+            scheduleChange( ChangeType.UPDATE,
+                            resource );
+        }
+
+        //Updating a pending addition is still an addition
+        final Set<ResourceChange> changes = awaitIncrementalBuild();
+        assertEquals( 1,
+                      changes.size() );
+        assertEquals( ChangeType.ADD,
+                      changes.iterator().next().getType() );
+    }
+
+    @Test
+    public void testQueueDiscardedOnceBuilt() throws Exception {
+        scheduleChange( ChangeType.UPDATE,
+                        makePath( "default://project/src/main/resources/rule.drl" ) );
+        assertEquals( 1,
+                      scheduler.getQueueCount() );
+        awaitIncrementalBuild();
+
+        //Wait for the build to complete
+        executor.shutdown();
+        assertTrue( executor.awaitTermination( 5,
+                                               TimeUnit.SECONDS ) );
+        assertEquals( 0,
+                      scheduler.getQueueCount() );
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBuildsOfProjectsNotBuiltHaveFullBuildPriority() throws Exception {
+        final ExecutorService capturingExecutor = mock( ExecutorService.class );
+        final ProjectBuildScheduler immediateScheduler = new ProjectBuildScheduler( buildService,
+                                                                                    cache,
+                                                                                    mock( Event.class ),
+                                                                                    incrementalBuildResultsEvent,
+                                                                                    capturingExecutor,
+                                                                                    mock( BuildMetricsCollector.class ),
+                                                                                    new ProjectDependencyGraph(),
+                                                                                    0 );
+        final ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass( Runnable.class );
+
+        immediateScheduler.scheduleIncrementalBuild( project,
+                                                     Collections.singleton( new ResourceChange( ChangeType.UPDATE,
+                                                                                                makePath( "default://project/src/main/resources/rule.drl" ),
+                                                                                                null ) ) );
+        verify( capturingExecutor ).execute( task.capture() );
+        assertEquals( BuildPriority.INCREMENTAL_BUILD,
+                      ( (PrioritizedBuildTask) task.getValue() ).getPriority() );
+
+        //Builders evicted from the cache are re-created by a Full Build
+        final Project other = new Project( makePath( "default://other" ),
+                                           makePath( "default://other/pom.xml" ),
+                                           makePath( "default://other/src/main/resources/META-INF/kmodule.xml" ),
+                                           makePath( "default://other/project.imports" ),
+                                           "other" );
+        immediateScheduler.scheduleIncrementalBuild( other,
+                                                     Collections.singleton( new ResourceChange( ChangeType.UPDATE,
+                                                                                                makePath( "default://other/src/main/resources/rule.drl" ),
+                                                                                                null ) ) );
+        verify( capturingExecutor,
+                times( 2 ) ).execute( task.capture() );
+        assertEquals( BuildPriority.FULL_BUILD,
+                      ( (PrioritizedBuildTask) task.getValue() ).getPriority() );
+    }
+
+    private void scheduleChange( final ChangeType type,
+                                 final Path resource ) {
+        scheduler.scheduleIncrementalBuild( project,
+                                            Collections.singleton( new ResourceChange( type,
+                                                                                       resource,
+                                                                                       null ) ) );
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<ResourceChange> awaitIncrementalBuild() {
+        verify( incrementalBuildResultsEvent,
+                timeout( 5000 ) ).fire( any( IncrementalBuildResults.class ) );
+        final ArgumentCaptor<Set> changes = ArgumentCaptor.forClass( Set.class );
+        verify( buildService,
+                times( 1 ) ).applyBatchResourceChanges( eq( project ),
+                                                        changes.capture() );
+        return changes.getValue();
+    }
+
+    private static Path makePath( final String uri ) {
+        final Path path = mock( Path.class );
+        when( path.toURI() ).thenReturn( uri );
+        return path;
+    }
+
+}
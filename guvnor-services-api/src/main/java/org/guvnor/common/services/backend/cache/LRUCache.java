@@ -1,6 +1,7 @@
 package org.guvnor.common.services.backend.cache;
 
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -19,11 +20,7 @@ public abstract class LRUCache<Path, V> implements Cache<Path, V> {
     public LRUCache() {
         cache = new LinkedHashMap<Path, V>( MAX_ENTRIES + 1,
                                             0.75f,
-                                            true ) {
-            public boolean removeEldestEntry( Map.Entry eldest ) {
-                return size() > MAX_ENTRIES;
-            }
-        };
+                                            true );
         cache = (Map) Collections.synchronizedMap( cache );
     }
 
@@ -43,6 +40,60 @@ public abstract class LRUCache<Path, V> implements Cache<Path, V> {
                                             value );
         cache.put( path,
                    value );
+        evictEntries();
+    }
+
+    /**
+     * Check whether the cache exceeds its capacity. Least recently used entries are evicted until it does not,
+     * however the most recently used entry is never evicted. By default the cache holds up to 20 entries.
+     * Sub-classes can override this to implement other policies. Called whilst holding the lock on the cache;
+     * implementations must only iterate the entries as looking up an entry changes their order.
+     * @param entries The cache entries, ordered from least to most recently used
+     * @return true if entries should be evicted
+     */
+    protected boolean isOverCapacity( final Map<Path, V> entries ) {
+        return entries.size() > MAX_ENTRIES;
+    }
+
+    /**
+     * Called after an entry has been evicted from the cache. Entries removed by invalidation are not notified.
+     * @param path The evicted entry key
+     * @param value The evicted entry
+     */
+    protected void onEviction( final Path path,
+                               final V value ) {
+    }
+
+    /**
+     * Evict the entry for a specific key, notifying {@link #onEviction(Object, Object)}
+     * @param path The cache entry key
+     */
+    protected void evictEntry( final Path path ) {
+        PortablePreconditions.checkNotNull( "path",
+                                            path );
+        final V value = cache.remove( path );
+        if ( value != null ) {
+            onEviction( path,
+                        value );
+        }
+    }
+
+    private void evictEntries() {
+        final Map<Path, V> evicted = new LinkedHashMap<Path, V>();
+        synchronized ( cache ) {
+            final Map<Path, V> entries = Collections.unmodifiableMap( cache );
+            final Iterator<Map.Entry<Path, V>> itr = cache.entrySet().iterator();
+            while ( cache.size() > 1 && isOverCapacity( entries ) ) {
+                final Map.Entry<Path, V> eldest = itr.next();
+                evicted.put( eldest.getKey(),
+                             eldest.getValue() );
+                itr.remove();
+            }
+        }
+        for ( Map.Entry<Path, V> e : evicted.entrySet() ) {
+            onEviction( e.getKey(),
+                        e.getValue() );
+        }
     }
 
     @Override